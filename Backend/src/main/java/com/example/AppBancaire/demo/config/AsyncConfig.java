@@ -1,5 +1,8 @@
 package com.example.bank.demo.config;
 
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -8,8 +11,21 @@ import java.util.concurrent.ScheduledExecutorService;
 
 @Configuration
 public class AsyncConfig {
+    // Sert aussi aux méthodes @Scheduled (aucun TaskScheduler n'est déclaré)
     @Bean
-    public ScheduledExecutorService scheduledExecutorService() {
-        return Executors.newScheduledThreadPool(5);
+    public ScheduledExecutorService scheduledExecutorService(VirtualThreads virtualThreads) {
+        return Executors.newScheduledThreadPool(5, virtualThreads.factory("scheduler-"));
     }
-} 
\ No newline at end of file
+
+    // Requêtes Tomcat sur threads virtuels : plus de limite server.tomcat.threads.max,
+    // la concurrence vers la base reste bornée par le pool Hikari
+    @Bean
+    @ConditionalOnProperty(name = "bank.threads.virtual.enabled", havingValue = "true")
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadRequests(VirtualThreads virtualThreads) {
+        return protocolHandler -> {
+            if (virtualThreads.isEnabled()) {
+                protocolHandler.setExecutor(virtualThreads.perTaskExecutor("http-virtual-"));
+            }
+        };
+    }
+}
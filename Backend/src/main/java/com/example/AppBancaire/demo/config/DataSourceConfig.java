@@ -0,0 +1,56 @@
+package com.example.bank.demo.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Deux pools Hikari : écriture (spring.datasource.hikari.*) et lecture (bank.datasource.read.hikari.*,
+ * mêmes url et identifiants sauf surcharge de jdbc-url/username/password, par exemple vers un
+ * réplica MySQL). Les transactions readOnly passent par le pool de lecture : les requêtes de
+ * reporting ne peuvent pas consommer les connexions des mouvements d'argent. Chaque pool publie ses métriques hikaricp.* sous son
+ * pool-name (attente d'acquisition, actives, inactives, en attente).
+ */
+@Configuration
+public class DataSourceConfig {
+
+    @Value("${bank.datasource.read.enabled:true}")
+    private boolean readPoolEnabled;
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource writeDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    @ConfigurationProperties("bank.datasource.read.hikari")
+    public HikariDataSource readDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource writeDataSource, HikariDataSource readDataSource,
+                                 ReplicaLagMonitor replicaLagMonitor, ReadYourWrites readYourWrites) {
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(ReadWriteRoutingDataSource.Route.WRITE, writeDataSource);
+        targets.put(ReadWriteRoutingDataSource.Route.READ, readPoolEnabled ? readDataSource : writeDataSource);
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(replicaLagMonitor, readYourWrites);
+        routing.setTargetDataSources(targets);
+        routing.setDefaultTargetDataSource(writeDataSource);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+}
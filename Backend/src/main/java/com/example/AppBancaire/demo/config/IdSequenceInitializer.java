@@ -0,0 +1,37 @@
+package com.example.bank.demo.config;
+
+import com.example.bank.demo.model.Transaction;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Aligne la séquence des transactions sur les ids existants, créés en AUTO_INCREMENT
+ * avant le passage aux ids alloués par blocs.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class IdSequenceInitializer {
+    private static final Logger logger = LoggerFactory.getLogger(IdSequenceInitializer.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    public void alignTransactionSequence() {
+        try {
+            Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM transaction", Long.class);
+            long nextValue = maxId + 1 + Transaction.ID_ALLOCATION_SIZE;
+            int updated = jdbcTemplate.update("UPDATE transaction_seq SET next_val = ? WHERE next_val < ?", nextValue, nextValue);
+            if (updated > 0) {
+                logger.info("Séquence transaction_seq alignée sur {}", nextValue);
+            }
+        } catch (Exception e) {
+            logger.error("Impossible d'aligner la séquence transaction_seq", e);
+        }
+    }
+}
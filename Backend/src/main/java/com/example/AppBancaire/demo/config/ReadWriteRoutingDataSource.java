@@ -0,0 +1,41 @@
+package com.example.bank.demo.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Aiguille chaque connexion vers le pool de lecture (réplica) quand la transaction courante est
+ * {@code @Transactional(readOnly = true)}, vers le pool d'écriture sinon (y compris hors transaction).
+ * Une lecture repasse sur le primaire quand le réplica est en retard ({@link ReplicaLagMonitor})
+ * ou quand l'appelant doit relire ses propres écritures ({@link ReadYourWrites}).
+ * Doit être enveloppée dans une LazyConnectionDataSourceProxy : la connexion n'est alors
+ * demandée qu'à la première requête SQL, une fois l'attribut readOnly de la transaction connu.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Route {
+        WRITE, READ
+    }
+
+    private final ReplicaLagMonitor replicaLagMonitor;
+    private final ReadYourWrites readYourWrites;
+
+    public ReadWriteRoutingDataSource(ReplicaLagMonitor replicaLagMonitor, ReadYourWrites readYourWrites) {
+        this.replicaLagMonitor = replicaLagMonitor;
+        this.readYourWrites = readYourWrites;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                readYourWrites.recordWrite();
+            }
+            return Route.WRITE;
+        }
+        if (!replicaLagMonitor.isReplicaUsable() || readYourWrites.mustReadPrimary()) {
+            return Route.WRITE;
+        }
+        return Route.READ;
+    }
+}
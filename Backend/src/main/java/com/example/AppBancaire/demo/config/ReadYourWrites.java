@@ -0,0 +1,58 @@
+package com.example.bank.demo.config;
+
+import com.example.bank.demo.security.AuthenticatedUser;
+import com.example.bank.demo.security.RequestPrincipal;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lecture de ses propres écritures : un utilisateur qui vient d'ouvrir une transaction
+ * d'écriture lit sur le primaire pendant bank.datasource.replica.pin-ms, le temps que le
+ * réplica rattrape ; la requête HTTP en cours y reste jusqu'à sa fin, même sans utilisateur
+ * authentifié (connexion, inscription).
+ */
+@Component
+public class ReadYourWrites {
+    private static final String ATTRIBUTE = ReadYourWrites.class.getName();
+
+    @Autowired
+    private RequestPrincipal requestPrincipal;
+
+    private final Cache<String, Boolean> pinned;
+
+    public ReadYourWrites(@Value("${bank.datasource.replica.pin-ms:5000}") long pinMillis,
+                          @Value("${bank.datasource.replica.pin-max-users:100000}") long maxUsers) {
+        this.pinned = CacheBuilder.newBuilder()
+            .expireAfterWrite(pinMillis, TimeUnit.MILLISECONDS)
+            .maximumSize(maxUsers)
+            .build();
+    }
+
+    public void recordWrite() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            attributes.setAttribute(ATTRIBUTE, Boolean.TRUE, RequestAttributes.SCOPE_REQUEST);
+        }
+        username().ifPresent(username -> pinned.put(username, Boolean.TRUE));
+    }
+
+    public boolean mustReadPrimary() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null && attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) != null) {
+            return true;
+        }
+        return username().map(username -> pinned.getIfPresent(username) != null).orElse(false);
+    }
+
+    private Optional<String> username() {
+        return requestPrincipal.current().map(AuthenticatedUser::username);
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.bank.demo.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Mesure le retard du réplica par battement de cœur : chaque nœud écrit l'heure courante dans
+ * replica_heartbeat sur le primaire, puis relit la valeur répliquée sur le pool de lecture.
+ * Le réplica n'est utilisé que si le dernier battement lu avec succès date de moins de
+ * bank.datasource.replica.max-lag-ms : si les mesures cessent d'aboutir (réplica figé, requête
+ * en échec ou bloquée), les transactions readOnly repassent d'elles-mêmes sur le primaire une fois
+ * ce délai écoulé. La lecture du battement est limitée au même délai (arrondi à la seconde).
+ * Le réplica est considéré inutilisable tant qu'aucune mesure n'a réussi.
+ */
+@Component
+public class ReplicaLagMonitor {
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaLagMonitor.class);
+
+    @Autowired
+    private HikariDataSource writeDataSource;
+
+    @Autowired
+    private HikariDataSource readDataSource;
+
+    @Value("${bank.datasource.read.enabled:true}")
+    private boolean enabled;
+
+    @Value("${bank.datasource.replica.max-lag-ms:2000}")
+    private long maxLagMillis;
+
+    private JdbcTemplate primary;
+    private JdbcTemplate replica;
+    private volatile long lagMillis = -1;
+    // Heure d'écriture, sur le primaire, du dernier battement relu sur le réplica (0 si aucun)
+    private volatile long lastBeat;
+
+    public ReplicaLagMonitor(MeterRegistry meterRegistry) {
+        Gauge.builder("bank.datasource.replica.lag", this, monitor -> monitor.lagMillis)
+            .description("Retard mesuré du réplica en millisecondes (-1 si inconnu)")
+            .register(meterRegistry);
+        Gauge.builder("bank.datasource.replica.usable", this, monitor -> monitor.isReplicaUsable() ? 1 : 0)
+            .description("1 si les lectures readOnly partent sur le réplica")
+            .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void createTable() {
+        if (!enabled) {
+            return;
+        }
+        primary = new JdbcTemplate(writeDataSource);
+        replica = new JdbcTemplate(readDataSource);
+        // JdbcTemplate attend des secondes ; une lecture plus longue que max-lag-ms est inutile
+        replica.setQueryTimeout((int) Math.max(1, (maxLagMillis + 999) / 1000));
+        primary.execute("CREATE TABLE IF NOT EXISTS replica_heartbeat (id INT NOT NULL PRIMARY KEY, beat BIGINT NOT NULL)");
+        try {
+            primary.update("INSERT INTO replica_heartbeat (id, beat) VALUES (1, ?)", System.currentTimeMillis());
+        } catch (DuplicateKeyException e) {
+            // Ligne déjà créée par un autre nœud
+        }
+    }
+
+    public boolean isReplicaUsable() {
+        return lastBeat > 0 && System.currentTimeMillis() - lastBeat <= maxLagMillis;
+    }
+
+    @Scheduled(fixedDelayString = "${bank.datasource.replica.heartbeat-ms:1000}")
+    public void measure() {
+        if (!enabled) {
+            return;
+        }
+        boolean wasUsable = isReplicaUsable();
+        try {
+            primary.update("UPDATE replica_heartbeat SET beat = ? WHERE id = 1", System.currentTimeMillis());
+            Long beat = replica.queryForObject("SELECT beat FROM replica_heartbeat WHERE id = 1", Long.class);
+            lagMillis = Math.max(0, System.currentTimeMillis() - beat);
+            lastBeat = beat;
+        } catch (Exception e) {
+            lagMillis = -1;
+            if (wasUsable) {
+                logger.warn("Battement du réplica illisible, lectures renvoyées sur le primaire sous {} ms : {}",
+                    maxLagMillis, e.getMessage());
+            }
+            return;
+        }
+        boolean usable = isReplicaUsable();
+        if (wasUsable && !usable) {
+            logger.warn("Retard du réplica {} ms > {} ms, lectures renvoyées sur le primaire", lagMillis, maxLagMillis);
+        } else if (!wasUsable && usable) {
+            logger.info("Réplica à jour ({} ms de retard), lectures readOnly rétablies sur le réplica", lagMillis);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.bank.demo.config;
+
+import com.example.bank.demo.repository.AccountRepository;
+import com.example.bank.demo.repository.TransactionRepository;
+import com.example.bank.demo.repository.UserRepository;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+/**
+ * En profil prod, signale tout findAll() sans pagination sur les tables volumineuses
+ * (transaction, account, users). bank.guard.unbounded-find-all vaut LOG (défaut)
+ * pour journaliser l'appel, ou REJECT pour le refuser.
+ */
+@Component
+@Profile("prod")
+public class UnboundedQueryGuard implements BeanPostProcessor {
+    private static final Logger logger = LoggerFactory.getLogger(UnboundedQueryGuard.class);
+
+    public enum Mode {
+        LOG,
+        REJECT
+    }
+
+    @Value("${bank.guard.unbounded-find-all:LOG}")
+    private Mode mode;
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof TransactionRepository || bean instanceof AccountRepository
+                || bean instanceof UserRepository)) {
+            return bean;
+        }
+        ProxyFactory proxyFactory = new ProxyFactory(bean);
+        proxyFactory.addAdvice((MethodInterceptor) invocation -> {
+            if (isUnboundedFindAll(invocation.getMethod().getName(), invocation.getArguments())) {
+                String message = "findAll() sans pagination sur " + beanName;
+                if (mode == Mode.REJECT) {
+                    throw new IllegalStateException(message + " refusé en production");
+                }
+                logger.warn(message, new Throwable("appelant"));
+            }
+            return invocation.proceed();
+        });
+        return proxyFactory.getProxy();
+    }
+
+    private static boolean isUnboundedFindAll(String methodName, Object[] arguments) {
+        return "findAll".equals(methodName)
+            && (arguments.length == 0 || (arguments.length == 1 && arguments[0] instanceof Sort));
+    }
+}
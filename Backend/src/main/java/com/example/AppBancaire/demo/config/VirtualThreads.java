@@ -0,0 +1,74 @@
+package com.example.bank.demo.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Mode d'exécution sur threads virtuels (bank.threads.virtual.enabled, désactivé par défaut).
+ * Le projet compile en Java 17 : les API des threads virtuels (Java 21) sont appelées par
+ * réflexion, et le mode retombe sur des threads classiques si la JVM ne les fournit pas.
+ */
+@Component
+public class VirtualThreads {
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreads.class);
+
+    private final boolean enabled;
+
+    public VirtualThreads(@Value("${bank.threads.virtual.enabled:false}") boolean requested) {
+        boolean available = requested && virtualFactory("probe-") != null;
+        if (requested && !available) {
+            logger.warn("Threads virtuels demandés mais indisponibles sur Java {} : threads classiques utilisés",
+                Runtime.version().feature());
+        } else if (available) {
+            logger.info("Exécution sur threads virtuels activée");
+        }
+        this.enabled = available;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Fabrique de threads nommés {@code prefix0, prefix1...} : virtuels si le mode est actif,
+     * sinon threads démons classiques.
+     */
+    public ThreadFactory factory(String prefix) {
+        if (enabled) {
+            return virtualFactory(prefix);
+        }
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, prefix + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Un thread neuf par tâche, sans file ni limite : réservé au mode virtuel, où la limite
+     * réelle est celle du pool de connexions.
+     */
+    public Executor perTaskExecutor(String prefix) {
+        ThreadFactory factory = factory(prefix);
+        return task -> factory.newThread(task).start();
+    }
+
+    // Thread.ofVirtual().name(prefix, 0).factory(), ou null avant Java 21
+    private static ThreadFactory virtualFactory(String prefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
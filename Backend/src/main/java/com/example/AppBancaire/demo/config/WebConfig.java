@@ -0,0 +1,27 @@
+package com.example.bank.demo.config;
+
+import com.example.bank.demo.security.RateLimitInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    @Autowired
+    private RateLimitInterceptor rateLimitInterceptor;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // Endpoints qui déplacent de l'argent
+        registry.addInterceptor(rateLimitInterceptor).addPathPatterns(
+            "/api/accounts/transfer",
+            "/api/accounts/transfers/batch",
+            "/api/accounts/pay-bill",
+            "/api/cashier/accounts/{accountId}/deposit",
+            "/api/cashier/accounts/{accountId}/withdraw",
+            "/api/cashier/accounts/transfer"
+        );
+    }
+}
@@ -1,26 +1,36 @@
 package com.example.bank.demo.controller;
 
+import com.example.bank.demo.model.TransactionView;
 import com.example.bank.demo.model.Account;
 import com.example.bank.demo.model.TransferRequest;
 import com.example.bank.demo.model.Transaction;
-import com.example.bank.demo.model.User;
 import com.example.bank.demo.model.VirementProgramme;
 import com.example.bank.demo.model.BankCard;
 import com.example.bank.demo.repository.BankCardRepository;
 import com.example.bank.demo.service.AccountService;
 import com.example.bank.demo.service.TransactionService;
 import com.example.bank.demo.service.VirementProgrammeService;
-import com.example.bank.demo.repository.UserRepository;
 import com.example.bank.demo.service.UserService;
 import com.example.bank.demo.repository.AccountRepository;
 import com.example.bank.demo.service.NameMatchingService;
+import com.example.bank.demo.service.BalanceLedgerService;
+import com.example.bank.demo.service.BatchTransferService;
+import com.example.bank.demo.model.BatchTransferRequest;
+import com.example.bank.demo.exception.ValidationException;
+import com.example.bank.demo.security.AuthenticatedUser;
+import com.example.bank.demo.security.RequestPrincipal;
+import com.example.bank.demo.security.SessionTokenService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.web.bind.annotation.*;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
-import java.util.Base64;
 import java.util.Map;
 import java.util.Date;
 import java.text.SimpleDateFormat;
@@ -34,13 +44,17 @@ import java.util.stream.Collectors;
 public class AccountController {
     private static final Logger logger = LoggerFactory.getLogger(AccountController.class);
 
+    @Autowired
+    private SessionTokenService sessionTokenService;
+
+    @Autowired
+    private RequestPrincipal requestPrincipal;
+
     @Autowired
     private AccountService accountService;
     @Autowired
     private TransactionService transactionService;
     @Autowired
-    private UserRepository userRepository;
-    @Autowired
     private VirementProgrammeService virementProgrammeService;
     @Autowired
     private BankCardRepository bankCardRepository;
@@ -50,14 +64,17 @@ public class AccountController {
     private AccountRepository accountRepository;
     @Autowired
     private NameMatchingService nameMatchingService;
+    @Autowired
+    private BalanceLedgerService balanceLedgerService;
+    @Autowired
+    private BatchTransferService batchTransferService;
+    @Autowired
+    private ObjectMapper objectMapper;
 
     @GetMapping
     public ResponseEntity<List<Account>> getAccounts(@RequestHeader("Authorization") String authHeader) {
         try {
-            String base64Credentials = authHeader.substring("Basic".length()).trim();
-            String credentials = new String(Base64.getDecoder().decode(base64Credentials));
-            String[] values = credentials.split(":", 2);
-            String username = values[0];
+            String username = extractUsername(authHeader);
             
             List<Account> accounts = accountService.getAccountsByUsername(username);
             return ResponseEntity.ok(accounts);
@@ -81,9 +98,7 @@ public class AccountController {
         try {
             logger.info("Received transfer request: {}", request);
             
-            String username = extractUsername(authHeader);
-            User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+            AuthenticatedUser principal = requestPrincipal.get();
 
             Account fromAccount = accountService.getAccountById(request.getFromAccountId())
                 .orElseThrow(() -> new RuntimeException("Source account not found"));
@@ -98,8 +113,8 @@ public class AccountController {
                 ));
             }
 
-            if (!fromAccount.getUser().getId().equals(user.getId())) {
-                logger.error("Unauthorized access: user {} trying to access account {}", username, request.getFromAccountId());
+            if (!fromAccount.getUser().getId().equals(principal.id())) {
+                logger.error("Unauthorized access: user {} trying to access account {}", principal.username(), request.getFromAccountId());
                 throw new RuntimeException("Unauthorized access to account");
             }
 
@@ -121,30 +136,93 @@ public class AccountController {
         }
     }
 
+    @PostMapping("/transfers/batch")
+    public ResponseEntity<?> batchTransfer(@RequestBody BatchTransferRequest request, @RequestHeader("Authorization") String authHeader) {
+        try {
+            AuthenticatedUser principal = requestPrincipal.get();
+
+            Account fromAccount = accountService.getAccountById(request.getFromAccountId())
+                .orElseThrow(() -> new RuntimeException("Source account not found"));
+
+            if (!fromAccount.getUser().getId().equals(principal.id())) {
+                logger.error("Unauthorized access: user {} trying to access account {}", principal.username(), request.getFromAccountId());
+                throw new RuntimeException("Unauthorized access to account");
+            }
+
+            return ResponseEntity.ok(batchTransferService.executeBatch(fromAccount, request));
+        } catch (ValidationException e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                "error", "Certains virements du lot sont invalides",
+                "details", e.getErrors()
+            ));
+        } catch (Exception e) {
+            logger.error("Batch transfer error:", e);
+            return ResponseEntity.badRequest().body(Map.of(
+                "error", e.getMessage()
+            ));
+        }
+    }
+
     @GetMapping("/{accountId}/transactions")
-    public ResponseEntity<List<Transaction>> getAccountTransactions(
+    public ResponseEntity<List<TransactionView>> getAccountTransactions(
             @PathVariable Long accountId,
             @RequestHeader("Authorization") String authHeader) {
         try {
-            String base64Credentials = authHeader.substring("Basic".length()).trim();
-            String credentials = new String(Base64.getDecoder().decode(base64Credentials));
-            String[] values = credentials.split(":", 2);
-            String username = values[0];
+            String username = extractUsername(authHeader);
             
-            List<Transaction> transactions = transactionService.getTransactionsByAccountId(accountId);
+            List<TransactionView> transactions = transactionService.getTransactionsByAccountId(accountId);
             return ResponseEntity.ok(transactions);
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
+    @GetMapping("/{accountId}/transactions/page")
+    public ResponseEntity<?> getAccountTransactionPage(
+            @PathVariable Long accountId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit,
+            @RequestHeader("Authorization") String authHeader) {
+        try {
+            checkAccountOwner(accountId);
+            return ResponseEntity.ok(transactionService.getTransactionPage(accountId, cursor, limit));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping(value = "/{accountId}/transactions/stream", produces = "application/x-ndjson")
+    public ResponseEntity<?> streamAccountTransactions(
+            @PathVariable Long accountId,
+            @RequestHeader("Authorization") String authHeader) {
+        try {
+            checkAccountOwner(accountId);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+
+        // Une ligne JSON par transaction, envoyée page par page
+        StreamingResponseBody body = outputStream ->
+            transactionService.streamTransactionsByAccountId(accountId, 500, chunk -> {
+                try {
+                    for (Transaction transaction : chunk) {
+                        outputStream.write(objectMapper.writeValueAsBytes(TransactionView.of(transaction)));
+                        outputStream.write('\n');
+                    }
+                    outputStream.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType("application/x-ndjson"))
+            .body(body);
+    }
+
     @GetMapping("/statistics")
     public ResponseEntity<?> getAccountStatistics(@RequestHeader("Authorization") String authHeader) {
         try {
-            String base64Credentials = authHeader.substring("Basic".length()).trim();
-            String credentials = new String(Base64.getDecoder().decode(base64Credentials));
-            String[] values = credentials.split(":", 2);
-            String username = values[0];
+            String username = extractUsername(authHeader);
             
             Map<String, Object> statistics = accountService.getAccountStatistics(username);
             return ResponseEntity.ok(statistics);
@@ -156,10 +234,7 @@ public class AccountController {
     @GetMapping("/statistics/expenses")
     public ResponseEntity<?> getExpenseStatistics(@RequestHeader("Authorization") String authHeader) {
         try {
-            String base64Credentials = authHeader.substring("Basic".length()).trim();
-            String credentials = new String(Base64.getDecoder().decode(base64Credentials));
-            String[] values = credentials.split(":", 2);
-            String username = values[0];
+            String username = extractUsername(authHeader);
             
             Map<String, Object> statistics = accountService.getExpenseStatistics(username);
             return ResponseEntity.ok(statistics);
@@ -171,10 +246,7 @@ public class AccountController {
     @GetMapping("/statistics/balance-history")
     public ResponseEntity<?> getBalanceHistory(@RequestHeader("Authorization") String authHeader) {
         try {
-            String base64Credentials = authHeader.substring("Basic".length()).trim();
-            String credentials = new String(Base64.getDecoder().decode(base64Credentials));
-            String[] values = credentials.split(":", 2);
-            String username = values[0];
+            String username = extractUsername(authHeader);
             
             Map<String, Object> history = accountService.getBalanceHistory(username);
             return ResponseEntity.ok(history);
@@ -186,15 +258,8 @@ public class AccountController {
     @GetMapping("/transaction-statistics")
     public ResponseEntity<?> getTransactionStatistics(@RequestHeader("Authorization") String authHeader) {
         try {
-            String base64Credentials = authHeader.substring("Basic".length()).trim();
-            String credentials = new String(Base64.getDecoder().decode(base64Credentials));
-            String[] values = credentials.split(":", 2);
-            String username = values[0];
-            
-            User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-                
-            Map<String, Object> statistics = transactionService.getTransactionStatistics(user.getId());
+            AuthenticatedUser principal = requestPrincipal.get();
+            Map<String, Object> statistics = transactionService.getTransactionStatistics(principal.id());
             return ResponseEntity.ok(statistics);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(e.getMessage());
@@ -205,9 +270,7 @@ public class AccountController {
     public ResponseEntity<?> programmerVirement(@RequestBody TransferRequest request, 
                                               @RequestHeader("Authorization") String authHeader) {
         try {
-            String username = extractUsername(authHeader);
-            User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+            AuthenticatedUser principal = requestPrincipal.get();
 
             Account fromAccount = accountService.getAccountById(request.getFromAccountId())
                 .orElseThrow(() -> new RuntimeException("Source account not found"));
@@ -222,18 +285,23 @@ public class AccountController {
                 ));
             }
             
-            if (!fromAccount.getUser().getId().equals(user.getId())) {
+            if (!fromAccount.getUser().getId().equals(principal.id())) {
                 throw new RuntimeException("Unauthorized access to account");
             }
 
             LocalDateTime dateExecution = LocalDateTime.parse(request.getScheduledDateTime());
+            LocalDateTime finRecurrence = request.getRecurrenceEndDateTime() != null
+                ? LocalDateTime.parse(request.getRecurrenceEndDateTime())
+                : null;
 
             VirementProgramme virement = virementProgrammeService.programmerVirement(
                 fromAccount,
                 request.getToAccountNumber(),
                 request.getBeneficiaryName(),
                 request.getAmount(),
-                dateExecution
+                dateExecution,
+                request.getRecurrence(),
+                finRecurrence
             );
 
             return ResponseEntity.ok().body(Map.of(
@@ -250,11 +318,9 @@ public class AccountController {
     @GetMapping("/transfers/programmes")
     public ResponseEntity<?> getVirementsProgrammes(@RequestHeader("Authorization") String authHeader) {
         try {
-            String username = extractUsername(authHeader);
-            User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+            AuthenticatedUser principal = requestPrincipal.get();
 
-            List<VirementProgramme> virements = virementProgrammeService.getVirementsProgrammes(user.getId());
+            List<VirementProgramme> virements = virementProgrammeService.getVirementsProgrammes(principal.id());
             return ResponseEntity.ok(virements);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of(
@@ -268,15 +334,13 @@ public class AccountController {
         @PathVariable Long accountId,
         @RequestHeader("Authorization") String authHeader) {
         try {
-            String username = extractUsername(authHeader);
-            User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+            AuthenticatedUser principal = requestPrincipal.get();
             
             Account account = accountService.getAccountById(accountId)
                 .orElseThrow(() -> new RuntimeException("Account not found"));
             
             // Vérifier que le compte appartient bien à l'utilisateur
-            if (!account.getUser().getId().equals(user.getId())) {
+            if (!account.getUser().getId().equals(principal.id())) {
                 return ResponseEntity.status(403).build();
             }
             
@@ -290,9 +354,7 @@ public class AccountController {
     @PostMapping("/pay-bill")
     public ResponseEntity<?> payBill(@RequestBody Map<String, Object> request, @RequestHeader("Authorization") String authHeader) {
         try {
-            String username = extractUsername(authHeader);
-            User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+            AuthenticatedUser principal = requestPrincipal.get();
 
             Long accountId = Long.parseLong(request.get("accountId").toString());
             Double amount = Double.parseDouble(request.get("amount").toString());
@@ -301,7 +363,7 @@ public class AccountController {
             String password = request.get("password").toString();
 
             // Vérifier le mot de passe
-            if (!userService.verifyPassword(user.getId(), password)) {
+            if (!userService.verifyPassword(principal.id(), password)) {
                 return ResponseEntity.status(401).body(Map.of("error", "Mot de passe incorrect"));
             }
 
@@ -310,19 +372,15 @@ public class AccountController {
                 .orElseThrow(() -> new RuntimeException("Account not found"));
 
             // Vérifier que le compte appartient à l'utilisateur
-            if (!account.getUser().getId().equals(user.getId())) {
+            if (!account.getUser().getId().equals(principal.id())) {
                 return ResponseEntity.status(403).body(Map.of("error", "Unauthorized access to account"));
             }
 
             // Vérifier le solde
-            if (account.getBalance() < amount) {
+            if (balanceLedgerService.balanceOf(account) < amount) {
                 return ResponseEntity.status(400).body(Map.of("error", "Solde insuffisant"));
             }
 
-            // Mettre à jour le solde
-            account.setBalance(account.getBalance() - amount);
-            accountRepository.save(account);
-
             // Créer la transaction
             Transaction transaction = new Transaction();
             transaction.setAccount(account);
@@ -332,11 +390,14 @@ public class AccountController {
             transaction.setDate(new Date());
             transaction.setFromAccount(account.getAccountNumber());
             transaction.setToAccount(serviceType);
-            transactionService.createTransaction(transaction);
+
+            // Mettre à jour le solde et écrire la transaction ensemble
+            double newBalance = balanceLedgerService.debit(account, amount,
+                () -> transactionService.createTransaction(transaction));
 
             return ResponseEntity.ok(Map.of(
                 "message", "Paiement effectué avec succès",
-                "newBalance", account.getBalance()
+                "newBalance", newBalance
             ));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
@@ -346,12 +407,10 @@ public class AccountController {
     @GetMapping("/bills")
     public ResponseEntity<List<Map<String, Object>>> getPaidBills(@RequestHeader("Authorization") String authHeader) {
         try {
-            String username = extractUsername(authHeader);
-            User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+            AuthenticatedUser principal = requestPrincipal.get();
 
             // Récupérer les transactions de type facture
-            List<Transaction> billTransactions = transactionService.getTransactionsByUserAndType(user.getId(), "BILL_PAYMENT");
+            List<Transaction> billTransactions = transactionService.getTransactionsByUserAndType(principal.id(), "BILL_PAYMENT");
             
             List<Map<String, Object>> paidBills = billTransactions.stream()
                 .map(transaction -> {
@@ -374,22 +433,18 @@ public class AccountController {
     }
 
     @GetMapping("/transactions/all")
-    public ResponseEntity<List<Transaction>> getAllTransactions(@RequestHeader("Authorization") String authHeader) {
+    public ResponseEntity<List<TransactionView>> getAllTransactions(@RequestHeader("Authorization") String authHeader) {
         try {
-            String username = extractUsername(authHeader);
-            User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+            AuthenticatedUser principal = requestPrincipal.get();
 
             // Pour un caissier, on récupère toutes les transactions
-            if (userService.isCashier(username)) {
-                List<Transaction> allTransactions = transactionService.getAllTransactions();
-                // Trier les transactions par date décroissante
-                allTransactions.sort((t1, t2) -> t2.getDate().compareTo(t1.getDate()));
-                return ResponseEntity.ok(allTransactions);
+            if (principal.hasRole("ROLE_CASHIER")) {
+                // Déjà triées par date décroissante par la requête
+                return ResponseEntity.ok(transactionService.getAllTransactions());
             }
 
             // Pour un utilisateur normal, on ne récupère que ses transactions
-            List<Transaction> userTransactions = transactionService.getTransactionsByUserId(user.getId());
+            List<TransactionView> userTransactions = transactionService.getTransactionViewsByUserId(principal.id());
             return ResponseEntity.ok(userTransactions);
         } catch (Exception e) {
             logger.error("Error fetching all transactions:", e);
@@ -402,11 +457,9 @@ public class AccountController {
         @PathVariable Long virementId,
         @RequestHeader("Authorization") String authHeader) {
         try {
-            String username = extractUsername(authHeader);
-            User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+            AuthenticatedUser principal = requestPrincipal.get();
 
-            virementProgrammeService.annulerVirement(virementId, user.getId());
+            virementProgrammeService.annulerVirement(virementId, principal.id());
             
             return ResponseEntity.ok().body(Map.of(
                 "message", "Virement programmé annulé avec succès"
@@ -418,10 +471,18 @@ public class AccountController {
         }
     }
 
+    private void checkAccountOwner(Long accountId) {
+        AuthenticatedUser principal = requestPrincipal.get();
+        Account account = accountService.getAccountById(accountId)
+            .orElseThrow(() -> new RuntimeException("Account not found"));
+        if (!account.getUser().getId().equals(principal.id())) {
+            throw new RuntimeException("Unauthorized access to account");
+        }
+    }
+
     private String extractUsername(String authHeader) {
-        String base64Credentials = authHeader.substring("Basic".length()).trim();
-        String credentials = new String(Base64.getDecoder().decode(base64Credentials));
-        String[] values = credentials.split(":", 2);
-        return values[0];
+        return requestPrincipal.current()
+            .map(AuthenticatedUser::username)
+            .orElseGet(() -> sessionTokenService.resolveUsername(authHeader));
     }
 } 
\ No newline at end of file
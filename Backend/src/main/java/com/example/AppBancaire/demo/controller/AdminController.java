@@ -1,16 +1,24 @@
 package com.example.bank.demo.controller;
 
 import com.example.bank.demo.model.Agency;
+import com.example.bank.demo.model.AgencyStatsView;
 import com.example.bank.demo.model.User;
+import com.example.bank.demo.service.AgencyAggregateService;
 import com.example.bank.demo.service.AgencyService;
+import com.example.bank.demo.service.TransactionService;
 import com.example.bank.demo.service.UserService;
+import com.example.bank.demo.security.AuthenticatedUser;
+import com.example.bank.demo.security.RequestPrincipal;
+import com.example.bank.demo.security.SessionTokenService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.Base64;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 
@@ -21,12 +29,24 @@ public class AdminController {
     
     private static final Logger logger = LoggerFactory.getLogger(AdminController.class);
     
+    @Autowired
+    private SessionTokenService sessionTokenService;
+
+    @Autowired
+    private RequestPrincipal requestPrincipal;
+
     @Autowired
     private UserService userService;
 
     @Autowired
     private AgencyService agencyService;
 
+    @Autowired
+    private AgencyAggregateService agencyAggregateService;
+
+    @Autowired
+    private TransactionService transactionService;
+
     @GetMapping("/users")
     public ResponseEntity<?> getAllUsers(@RequestHeader("Authorization") String authHeader) {
         try {
@@ -47,6 +67,31 @@ public class AdminController {
         }
     }
 
+    @GetMapping("/users/page")
+    public ResponseEntity<?> getUserPage(
+            @RequestParam(required = false) Long cursor,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestHeader("Authorization") String authHeader) {
+        try {
+            String username = extractUsername(authHeader);
+            if (!userService.isAdmin(username)) {
+                return ResponseEntity.status(403).body(Map.of("error", "Access denied"));
+            }
+
+            Map<String, Object> page = userService.getUserPage(cursor, limit);
+            @SuppressWarnings("unchecked")
+            List<User> users = (List<User>) page.get("users");
+            users.forEach(user -> {
+                user.setPassword(null);
+                user.setAccounts(null);
+            });
+            return ResponseEntity.ok(page);
+        } catch (Exception e) {
+            logger.error("Error fetching users", e);
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @PostMapping("/users")
     public ResponseEntity<User> createUser(@RequestBody User user) {
         logger.info("Received request to create user: {}", user.getUsername());
@@ -208,9 +253,50 @@ public class AdminController {
         }
     }
 
+    // Statistiques filtrées de toutes les agences, calculées en une seule requête
+    @PostMapping("/stats/filtered")
+    public ResponseEntity<?> getFilteredStatisticsForAllAgencies(
+        @RequestBody Map<String, String> request,
+        @RequestHeader("Authorization") String authHeader
+    ) {
+        try {
+            String username = extractUsername(authHeader);
+            if (!userService.isAdmin(username)) {
+                return ResponseEntity.status(403).body(Map.of("error", "Access denied"));
+            }
+
+            LocalDateTime startDate = LocalDateTime.parse(request.get("startDate").replace("Z", ""));
+            LocalDateTime endDate = LocalDateTime.parse(request.get("endDate").replace("Z", ""));
+            List<AgencyStatsView> stats = transactionService.getAllAgenciesStatsByDateRange(
+                Date.from(startDate.atZone(ZoneId.systemDefault()).toInstant()),
+                Date.from(endDate.atZone(ZoneId.systemDefault()).toInstant())
+            );
+            return ResponseEntity.ok(stats);
+        } catch (Exception e) {
+            logger.error("Error calculating statistics for all agencies", e);
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    // Recalcule les agrégats journaliers des agences depuis l'historique des transactions
+    @PostMapping("/stats/rebuild")
+    public ResponseEntity<?> rebuildAgencyAggregates(@RequestHeader("Authorization") String authHeader) {
+        try {
+            String username = extractUsername(authHeader);
+            if (!userService.isAdmin(username)) {
+                return ResponseEntity.status(403).body(Map.of("error", "Access denied"));
+            }
+
+            return ResponseEntity.ok(agencyAggregateService.rebuild());
+        } catch (Exception e) {
+            logger.error("Error rebuilding agency aggregates", e);
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     private String extractUsername(String authHeader) {
-        String base64Credentials = authHeader.substring("Basic".length()).trim();
-        String credentials = new String(Base64.getDecoder().decode(base64Credentials));
-        return credentials.split(":", 2)[0];
+        return requestPrincipal.current()
+            .map(AuthenticatedUser::username)
+            .orElseGet(() -> sessionTokenService.resolveUsername(authHeader));
     }
 } 
\ No newline at end of file
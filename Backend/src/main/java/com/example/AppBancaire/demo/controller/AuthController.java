@@ -5,6 +5,7 @@ import com.example.bank.demo.model.Account;
 import com.example.bank.demo.service.UserService;
 import com.example.bank.demo.service.AccountService;
 import com.example.bank.demo.security.LoginAttemptService;
+import com.example.bank.demo.security.SessionTokenService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -32,6 +33,9 @@ public class AuthController {
     @Autowired
     private LoginAttemptService loginAttemptService;
 
+    @Autowired
+    private SessionTokenService sessionTokenService;
+
     @PostMapping("/login")
     public ResponseEntity<?> login(@RequestHeader("Authorization") String authHeader) {
         try {
@@ -44,8 +48,9 @@ public class AuthController {
             // Vérifier si l'utilisateur est bloqué
             if (loginAttemptService.isBlocked(username)) {
                 long remainingTime = loginAttemptService.getRemainingBlockTime(username);
-                String timeUnit = loginAttemptService.isInLongBlock(username) ? "heures" : "minutes";
-                String message = loginAttemptService.isInLongBlock(username) 
+                boolean longBlock = loginAttemptService.isInLongBlock(username);
+                String timeUnit = longBlock ? "heures" : "minutes";
+                String message = longBlock 
                     ? "Compte bloqué pour 24 heures suite à de multiples tentatives échouées."
                     : "Trop de tentatives échouées. Réessayez dans " + remainingTime + " " + timeUnit + ".";
                 
@@ -53,7 +58,7 @@ public class AuthController {
                     "error", "Compte temporairement bloqué",
                     "message", message,
                     "remainingTime", remainingTime,
-                    "isLongBlock", loginAttemptService.isInLongBlock(username)
+                    "isLongBlock", longBlock
                 ));
             }
 
@@ -80,6 +85,9 @@ public class AuthController {
                 response.put("username", user.getUsername());
                 response.put("id", user.getId().toString());
                 response.put("fullName", user.getFullName());
+                // Jeton à présenter en "Authorization: Bearer" pour ne plus renvoyer le mot de passe
+                response.put("token", sessionTokenService.issue(user));
+                response.put("tokenExpiresIn", String.valueOf(sessionTokenService.getTtlSeconds()));
                 return ResponseEntity.ok(response);
             }
             
@@ -88,7 +96,7 @@ public class AuthController {
             
             return ResponseEntity.status(401).body(Map.of(
                 "error", "Identifiants invalides",
-                "remainingAttempts", (3 - loginAttemptService.getAttempts(username))
+                "remainingAttempts", loginAttemptService.getRemainingAttempts(username)
             ));
         } catch (Exception e) {
             logger.error("Error during authentication", e);
@@ -4,11 +4,16 @@ import com.example.bank.demo.model.Account;
 import com.example.bank.demo.model.BankCard;
 import com.example.bank.demo.model.User;
 import com.example.bank.demo.model.AccountCreationRequest;
+import com.example.bank.demo.model.AccountView;
+import com.example.bank.demo.model.CashierLogView;
+import com.example.bank.demo.model.TransactionView;
 import com.example.bank.demo.repository.BankCardRepository;
 import com.example.bank.demo.service.AccountService;
 import com.example.bank.demo.service.UserService;
 import com.example.bank.demo.model.Transaction;
 import com.example.bank.demo.service.TransactionService;
+import com.example.bank.demo.security.AuthenticatedUser;
+import com.example.bank.demo.security.RequestPrincipal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,7 +21,6 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
-import java.util.Base64;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -28,12 +32,17 @@ import com.example.bank.demo.service.CashierLogService;
 import com.example.bank.demo.repository.TransactionRepository;
 import com.example.bank.demo.model.Agency;
 import com.example.bank.demo.service.AgencyService;
+import com.example.bank.demo.service.BalanceLedgerService;
+import com.example.bank.demo.service.AgencyAccountService;
 
 @RestController
 @RequestMapping("/api/cashier")
 @CrossOrigin(origins = "http://localhost:3000", allowCredentials = "true")
 public class CashierController {
     
+    @Autowired
+    private RequestPrincipal requestPrincipal;
+
     @Autowired
     private TransactionService transactionService;
     
@@ -58,13 +67,13 @@ public class CashierController {
     @Autowired
     private AgencyService agencyService;
 
-    private static final Logger logger = LoggerFactory.getLogger(CashierController.class);
+    @Autowired
+    private BalanceLedgerService balanceLedgerService;
 
-    private String extractUsername(String authHeader) {
-        String base64Credentials = authHeader.substring("Basic".length()).trim();
-        String credentials = new String(Base64.getDecoder().decode(base64Credentials));
-        return credentials.split(":", 2)[0];
-    }
+    @Autowired
+    private AgencyAccountService agencyAccountService;
+
+    private static final Logger logger = LoggerFactory.getLogger(CashierController.class);
 
     private String generateAccountNumber() {
         Random random = new Random();
@@ -76,18 +85,15 @@ public class CashierController {
     }
 
     @GetMapping("/accounts/all")
-    public ResponseEntity<List<Account>> getAllAccounts(@RequestHeader("Authorization") String authHeader) {
+    public ResponseEntity<List<AccountView>> getAllAccounts(@RequestHeader("Authorization") String authHeader) {
         try {
-            String username = extractUsername(authHeader);
-            User cashier = userService.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("Cashier not found"));
-
-            if (!userService.isCashier(username)) {
+            AuthenticatedUser principal = requestPrincipal.get();
+            if (!principal.hasRole("ROLE_CASHIER")) {
                 return ResponseEntity.status(403).build();
             }
 
             // Récupérer tous les comptes actifs sans filtrer par agence
-            List<Account> accounts = accountService.getActiveAccounts();
+            List<AccountView> accounts = accountService.getActiveAccounts();
             return ResponseEntity.ok(accounts);
         } catch (Exception e) {
             logger.error("Erreur lors de la récupération des comptes:", e);
@@ -96,25 +102,19 @@ public class CashierController {
     }
 
     @GetMapping("/accounts/agency")
-    public ResponseEntity<List<Account>> getAgencyAccounts(@RequestHeader("Authorization") String authHeader) {
+    public ResponseEntity<List<AccountView>> getAgencyAccounts(@RequestHeader("Authorization") String authHeader) {
         try {
-            String username = extractUsername(authHeader);
-            User cashier = userService.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("Cashier not found"));
-
-            if (!userService.isCashier(username)) {
+            AuthenticatedUser principal = requestPrincipal.get();
+            if (!principal.hasRole("ROLE_CASHIER")) {
                 return ResponseEntity.status(403).build();
             }
 
-            if (cashier.getAgency() == null) {
+            if (principal.agencyId() == null) {
                 throw new RuntimeException("Caissier non associé à une agence");
             }
 
-            // Récupérer les comptes de l'agence du caissier
-            List<Account> accounts = accountService.getActiveAccounts().stream()
-                .filter(account -> account.getUser().getAgency() != null 
-                    && account.getUser().getAgency().getId().equals(cashier.getAgency().getId()))
-                .collect(Collectors.toList());
+            // Récupérer les comptes de l'agence du caissier, filtrés en base
+            List<AccountView> accounts = agencyAccountService.getActiveAccounts(principal.agencyId());
 
             return ResponseEntity.ok(accounts);
         } catch (Exception e) {
@@ -123,18 +123,37 @@ public class CashierController {
         }
     }
 
+    @GetMapping("/accounts/agency/page")
+    public ResponseEntity<?> getAgencyAccountPage(
+            @RequestParam(required = false) Long cursor,
+            @RequestParam(defaultValue = "50") int limit,
+            @RequestHeader("Authorization") String authHeader) {
+        try {
+            AuthenticatedUser principal = requestPrincipal.get();
+            if (!principal.hasRole("ROLE_CASHIER")) {
+                return ResponseEntity.status(403).build();
+            }
+
+            if (principal.agencyId() == null) {
+                throw new RuntimeException("Caissier non associé à une agence");
+            }
+
+            return ResponseEntity.ok(agencyAccountService.getActiveAccountPage(principal.agencyId(), cursor, limit));
+        } catch (Exception e) {
+            logger.error("Erreur lors de la récupération des comptes:", e);
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @PutMapping("/accounts/{accountId}/balance")
     public ResponseEntity<?> updateBalance(
             @PathVariable Long accountId,
             @RequestBody Map<String, Double> balanceUpdate,
             @RequestHeader("Authorization") String authHeader) {
         try {
-            String base64Credentials = authHeader.substring("Basic".length()).trim();
-            String credentials = new String(Base64.getDecoder().decode(base64Credentials));
-            String[] values = credentials.split(":", 2);
-            String username = values[0];
+            AuthenticatedUser principal = requestPrincipal.get();
 
-            if (!userService.isCashier(username)) {
+            if (!principal.hasRole("ROLE_CASHIER")) {
                 return ResponseEntity.status(403).body("Access denied");
             }
 
@@ -153,11 +172,10 @@ public class CashierController {
     @PostMapping("/cards")
     public ResponseEntity<?> createBankCard(@RequestBody BankCard card, @RequestHeader("Authorization") String authHeader) {
         try {
-            String username = extractUsername(authHeader);
-            User cashier = userService.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("Cashier not found"));
+            AuthenticatedUser principal = requestPrincipal.get();
+            User cashier = userService.getReference(principal.id());
 
-            if (!userService.isCashier(username)) {
+            if (!principal.hasRole("ROLE_CASHIER")) {
                 return ResponseEntity.status(403).body("Access denied");
             }
 
@@ -199,11 +217,8 @@ public class CashierController {
         @PathVariable Long accountId,
         @RequestHeader("Authorization") String authHeader) {
         try {
-            String username = extractUsername(authHeader);
-            User cashier = userService.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("Cashier not found"));
-
-            if (!userService.isCashier(username)) {
+            AuthenticatedUser principal = requestPrincipal.get();
+            if (!principal.hasRole("ROLE_CASHIER")) {
                 return ResponseEntity.status(403).build();
             }
 
@@ -211,7 +226,7 @@ public class CashierController {
             Account account = accountService.getAccountById(accountId)
                 .orElseThrow(() -> new RuntimeException("Account not found"));
             
-            if (!account.getUser().getAgency().getId().equals(cashier.getAgency().getId())) {
+            if (!account.getUser().getAgency().getId().equals(principal.agencyId())) {
                 return ResponseEntity.status(403).build();
             }
 
@@ -225,8 +240,8 @@ public class CashierController {
     @PutMapping("/cards/{cardId}/block")
     public ResponseEntity<?> blockCard(@PathVariable Long cardId, @RequestHeader("Authorization") String authHeader) {
         try {
-            String username = extractUsername(authHeader);
-            if (!userService.isCashier(username)) {
+            AuthenticatedUser principal = requestPrincipal.get();
+            if (!principal.hasRole("ROLE_CASHIER")) {
                 return ResponseEntity.status(403).body("Access denied");
             }
 
@@ -240,11 +255,10 @@ public class CashierController {
     @DeleteMapping("/cards/{cardId}")
     public ResponseEntity<?> deleteCard(@PathVariable Long cardId, @RequestHeader("Authorization") String authHeader) {
         try {
-            String username = extractUsername(authHeader);
-            User cashier = userService.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("Cashier not found"));
+            AuthenticatedUser principal = requestPrincipal.get();
+            User cashier = userService.getReference(principal.id());
 
-            if (!userService.isCashier(username)) {
+            if (!principal.hasRole("ROLE_CASHIER")) {
                 return ResponseEntity.status(403).build();
             }
 
@@ -253,7 +267,7 @@ public class CashierController {
                 .orElseThrow(() -> new RuntimeException("Card not found"));
 
             // Vérifier que la carte appartient à un compte de l'agence du caissier
-            if (!card.getAccount().getUser().getAgency().getId().equals(cashier.getAgency().getId())) {
+            if (!card.getAccount().getUser().getAgency().getId().equals(principal.agencyId())) {
                 return ResponseEntity.status(403).body("Not authorized to delete this card");
             }
 
@@ -285,8 +299,8 @@ public class CashierController {
             @RequestBody User userDetails,
             @RequestHeader("Authorization") String authHeader) {
         try {
-            String username = extractUsername(authHeader);
-            if (!userService.isCashier(username)) {
+            AuthenticatedUser principal = requestPrincipal.get();
+            if (!principal.hasRole("ROLE_CASHIER")) {
                 return ResponseEntity.status(403).body("Access denied");
             }
 
@@ -316,11 +330,10 @@ public class CashierController {
                                          @RequestHeader("Authorization") String authHeader) {
         User cashier = null;
         try {
-            String username = extractUsername(authHeader);
-            cashier = userService.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("Cashier not found"));
+            AuthenticatedUser principal = requestPrincipal.get();
+            cashier = userService.getReference(principal.id());
 
-            if (!userService.isCashier(username)) {
+            if (!principal.hasRole("ROLE_CASHIER")) {
                 return ResponseEntity.status(403).body("Accès non autorisé");
             }
 
@@ -341,10 +354,10 @@ public class CashierController {
             user.setRole("ROLE_USER");
             
             // Associer l'agence du caissier au nouveau client
-            if (cashier.getAgency() == null) {
+            if (principal.agencyId() == null) {
                 throw new RuntimeException("Le caissier n'est pas associé à une agence");
             }
-            user.setAgency(cashier.getAgency());
+            user.setAgency(agencyService.getAgencyById(principal.agencyId()));
             
             User savedUser = userService.createUser(user);
 
@@ -356,6 +369,7 @@ public class CashierController {
             account.setStatus("ACTIVE");
             
             Account savedAccount = accountService.createAccount(account);
+            agencyAccountService.invalidateCount(principal.agencyId());
 
             // Ajouter le log
             cashierLogService.createDetailedLog(
@@ -392,12 +406,12 @@ public class CashierController {
         @PathVariable Long accountId,
         @RequestBody Map<String, String> request,
         @RequestHeader("Authorization") String authHeader) {
+        User cashier = null;
         try {
-            String username = extractUsername(authHeader);
-            User cashier = userService.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("Cashier not found"));
+            AuthenticatedUser principal = requestPrincipal.get();
+            cashier = userService.getReference(principal.id());
 
-            if (!userService.isCashier(username)) {
+            if (!principal.hasRole("ROLE_CASHIER")) {
                 return ResponseEntity.status(403).body(Map.of(
                     "error", "Access denied"
                 ));
@@ -405,7 +419,7 @@ public class CashierController {
 
             // Vérifier le mot de passe du caissier
             String password = request.get("password");
-            if (!userService.verifyPassword(username, password)) {
+            if (!userService.verifyPassword(principal.username(), password)) {
                 return ResponseEntity.status(401).body(Map.of(
                     "error", "Mot de passe incorrect"
                 ));
@@ -421,22 +435,25 @@ public class CashierController {
                 ));
             }
 
-            // Créer une transaction pour la clôture
-            Transaction closeTransaction = new Transaction();
-            closeTransaction.setAccount(account);
-            closeTransaction.setAmount(account.getBalance());
-            closeTransaction.setType("ACCOUNT_CLOSURE");
-            closeTransaction.setDescription("Clôture du compte");
-            closeTransaction.setDate(new Date());
-            closeTransaction.setFromAccount(account.getAccountNumber());
-            closeTransaction.setToAccount("BANK");
-            transactionService.createTransaction(closeTransaction);
-
-            // Mettre le solde à zéro et marquer comme clôturé
-            double previousBalance = account.getBalance();
-            account.setBalance(0.0);
+            // Mettre le solde à zéro et écrire la transaction de clôture avec le solde soldé
+            double previousBalance = balanceLedgerService.close(account, balance -> {
+                Transaction closeTransaction = new Transaction();
+                closeTransaction.setAccount(account);
+                closeTransaction.setAmount(balance);
+                closeTransaction.setType("ACCOUNT_CLOSURE");
+                closeTransaction.setDescription("Clôture du compte");
+                closeTransaction.setDate(new Date());
+                closeTransaction.setFromAccount(account.getAccountNumber());
+                closeTransaction.setToAccount("BANK");
+                transactionService.createTransaction(closeTransaction);
+            });
+
+            // Marquer comme clôturé
             account.setStatus("CLOSED");
             accountService.updateAccount(account);
+            if (principal.agencyId() != null) {
+                agencyAccountService.invalidateCount(principal.agencyId());
+            }
 
             // Ajouter le log de clture
             cashierLogService.createDetailedLog(
@@ -455,8 +472,6 @@ public class CashierController {
             ));
         } catch (Exception e) {
             // Log en cas d'erreur
-            User cashier = userService.findByUsername(extractUsername(authHeader))
-                .orElse(null);
             if (cashier != null) {
                 cashierLogService.createDetailedLog(
                     "ACCOUNT_CLOSURE",
@@ -480,12 +495,12 @@ public class CashierController {
         @PathVariable Long accountId,
         @RequestBody Map<String, Object> request,
         @RequestHeader("Authorization") String authHeader) {
+        User cashier = null;
         try {
-            String username = extractUsername(authHeader);
-            User cashier = userService.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("Cashier not found"));
+            AuthenticatedUser principal = requestPrincipal.get();
+            cashier = userService.getReference(principal.id());
 
-            if (!userService.isCashier(username)) {
+            if (!principal.hasRole("ROLE_CASHIER")) {
                 return ResponseEntity.status(403).body("Access denied");
             }
 
@@ -511,11 +526,10 @@ public class CashierController {
             depositTransaction.setDate(new Date());
             depositTransaction.setFromAccount("CASH");
             depositTransaction.setToAccount(account.getAccountNumber());
-            transactionService.createTransaction(depositTransaction);
 
-            // Mettre à jour le solde
-            account.setBalance(account.getBalance() + amount);
-            Account updatedAccount = accountService.updateAccount(account);
+            // Mettre à jour le solde et écrire la transaction ensemble
+            double newBalance = balanceLedgerService.credit(account, amount,
+                () -> transactionService.createTransaction(depositTransaction));
 
             // Ajouter le log de dépôt
             cashierLogService.createDetailedLog(
@@ -531,12 +545,10 @@ public class CashierController {
 
             return ResponseEntity.ok(Map.of(
                 "message", "Dépôt effectué avec succès",
-                "newBalance", updatedAccount.getBalance()
+                "newBalance", newBalance
             ));
         } catch (Exception e) {
             // Log en cas d'erreur
-            User cashier = userService.findByUsername(extractUsername(authHeader))
-                .orElse(null);
             if (cashier != null) {
                 cashierLogService.createDetailedLog(
                     "DEPOSIT",
@@ -561,8 +573,8 @@ public class CashierController {
         @RequestBody Map<String, Object> request,
         @RequestHeader("Authorization") String authHeader) {
         try {
-            String username = extractUsername(authHeader);
-            if (!userService.isCashier(username)) {
+            AuthenticatedUser principal = requestPrincipal.get();
+            if (!principal.hasRole("ROLE_CASHIER")) {
                 return ResponseEntity.status(403).body("Access denied");
             }
 
@@ -580,7 +592,7 @@ public class CashierController {
             }
 
             // Vérifier le solde disponible
-            if (account.getBalance() < amount) {
+            if (balanceLedgerService.balanceOf(account) < amount) {
                 return ResponseEntity.badRequest().body(Map.of(
                     "error", "Solde insuffisant"
                 ));
@@ -595,15 +607,14 @@ public class CashierController {
             withdrawTransaction.setDate(new Date());
             withdrawTransaction.setFromAccount(account.getAccountNumber());
             withdrawTransaction.setToAccount("CASH");
-            transactionService.createTransaction(withdrawTransaction);
 
-            // Mettre à jour le solde
-            account.setBalance(account.getBalance() - amount);
-            Account updatedAccount = accountService.updateAccount(account);
+            // Mettre à jour le solde et écrire la transaction ensemble
+            double newBalance = balanceLedgerService.debit(account, amount,
+                () -> transactionService.createTransaction(withdrawTransaction));
 
             return ResponseEntity.ok(Map.of(
                 "message", "Retrait effectué avec succès",
-                "newBalance", updatedAccount.getBalance()
+                "newBalance", newBalance
             ));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of(
@@ -617,8 +628,8 @@ public class CashierController {
         @RequestBody Map<String, Object> request,
         @RequestHeader("Authorization") String authHeader) {
         try {
-            String username = extractUsername(authHeader);
-            if (!userService.isCashier(username)) {
+            AuthenticatedUser principal = requestPrincipal.get();
+            if (!principal.hasRole("ROLE_CASHIER")) {
                 return ResponseEntity.status(403).body("Access denied");
             }
 
@@ -640,31 +651,25 @@ public class CashierController {
             }
 
             // Vérifier le solde disponible
-            if (fromAccount.getBalance() < amount) {
+            if (balanceLedgerService.balanceOf(fromAccount) < amount) {
                 return ResponseEntity.badRequest().body(Map.of(
                     "error", "Solde insuffisant"
                 ));
             }
 
-            // Effectuer le transfert
-            fromAccount.setBalance(fromAccount.getBalance() - amount);
-            toAccount.setBalance(toAccount.getBalance() + amount);
-
-            // Créer les transactions
-            accountService.createTransactionPair(
-                fromAccount,
-                toAccount,
-                amount,
-                description != null ? description : "Virement interne"
-            );
-
-            accountService.updateAccount(fromAccount);
-            accountService.updateAccount(toAccount);
+            // Effectuer le transfert et créer les transactions
+            balanceLedgerService.transfer(fromAccount, toAccount, amount,
+                () -> accountService.createTransactionPair(
+                    fromAccount,
+                    toAccount,
+                    amount,
+                    description != null ? description : "Virement interne"
+                ));
 
             return ResponseEntity.ok(Map.of(
                 "message", "Virement effectué avec succès",
-                "fromAccountBalance", fromAccount.getBalance(),
-                "toAccountBalance", toAccount.getBalance()
+                "fromAccountBalance", balanceLedgerService.balanceOf(fromAccount),
+                "toAccountBalance", balanceLedgerService.balanceOf(toAccount)
             ));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of(
@@ -674,17 +679,13 @@ public class CashierController {
     }
 
     @GetMapping("/logs")
-    public ResponseEntity<List<CashierLog>> getCashierLogs(@RequestHeader("Authorization") String authHeader) {
+    public ResponseEntity<List<CashierLogView>> getCashierLogs(@RequestHeader("Authorization") String authHeader) {
         try {
-            String username = extractUsername(authHeader);
-            if (!userService.isCashier(username)) {
+            AuthenticatedUser principal = requestPrincipal.get();
+            if (!principal.hasRole("ROLE_CASHIER")) {
                 return ResponseEntity.status(403).build();
             }
-
-            User cashier = userService.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("Cashier not found"));
-
-            List<CashierLog> logs = cashierLogService.getLogsByCashier(cashier.getId());
+            List<CashierLogView> logs = cashierLogService.getLogViewsByCashier(principal.id());
             return ResponseEntity.ok(logs);
         } catch (Exception e) {
             logger.error("Error fetching cashier logs:", e);
@@ -695,33 +696,17 @@ public class CashierController {
     @GetMapping("/agency-transactions")
     public ResponseEntity<?> getAgencyTransactions(@RequestHeader("Authorization") String authHeader) {
         try {
-            String username = extractUsername(authHeader);
-            logger.info("Récupération des transactions pour le caissier: {}", username);
-            
-            User cashier = userService.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("Caissier non trouvé"));
-            
-            logger.info("Caissier trouvé: ID={}, Role={}", cashier.getId(), cashier.getRole());
+            AuthenticatedUser principal = requestPrincipal.get();
+            logger.info("Récupération des transactions pour le caissier: {}", principal.username());
             
-            if (cashier.getAgency() == null) {
-                logger.error("Caissier {} n'est pas associé à une agence", username);
+            if (principal.agencyId() == null) {
+                logger.error("Caissier {} n'est pas associé à une agence", principal.username());
                 throw new RuntimeException("Caissier non associé  une agence");
             }
-
-            Agency agency = cashier.getAgency();
-            logger.info("Agence du caissier: ID={}, Nom={}", agency.getId(), agency.getName());
-            
-            List<Transaction> transactions = transactionRepository.findTransactionsByAgencyId(agency.getId());
+            logger.info("Agence du caissier: ID={}", principal.agencyId());
             
+            List<TransactionView> transactions = transactionService.getTransactionsByAgencyId(principal.agencyId());
             logger.info("Nombre de transactions trouvées: {}", transactions.size());
-            if (!transactions.isEmpty()) {
-                transactions.forEach(t -> 
-                    logger.info("Transaction: ID={}, Type={}, Amount={}, Account={}", 
-                        t.getId(), t.getType(), t.getAmount(), t.getAccount().getAccountNumber())
-                );
-            } else {
-                logger.info("Aucune transaction trouvée pour l'agence");
-            }
             
             return ResponseEntity.ok(transactions);
         } catch (Exception e) {
@@ -733,17 +718,15 @@ public class CashierController {
     @GetMapping("/agency-info")
     public ResponseEntity<?> getAgencyInfo(@RequestHeader("Authorization") String authHeader) {
         try {
-            String username = extractUsername(authHeader);
-            User cashier = userService.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("Caissier non trouvé"));
-            
-            if (cashier.getAgency() == null) {
+            AuthenticatedUser principal = requestPrincipal.get();
+            if (principal.agencyId() == null) {
                 throw new RuntimeException("Caissier non associé à une agence");
             }
 
+            Agency agency = agencyService.getAgencyById(principal.agencyId());
             Map<String, Object> agencyInfo = Map.of(
-                "name", cashier.getAgency().getName(),
-                "id", cashier.getAgency().getId()
+                "name", agency.getName(),
+                "id", agency.getId()
             );
             
             return ResponseEntity.ok(agencyInfo);
@@ -7,16 +7,21 @@ import com.example.bank.demo.service.AccountService;
 import com.example.bank.demo.service.TransactionService;
 import com.example.bank.demo.service.AgencyService;
 import com.example.bank.demo.model.Agency;
+import com.example.bank.demo.model.AgencyStatsView;
 import com.example.bank.demo.model.Transaction;
 import com.example.bank.demo.model.CashierLog;
 import com.example.bank.demo.service.CashierLogService;
+import com.example.bank.demo.service.BalanceLedgerService;
+import com.example.bank.demo.service.AgencyStatsService;
+import com.example.bank.demo.security.AuthenticatedUser;
+import com.example.bank.demo.security.RequestPrincipal;
+import com.example.bank.demo.security.SessionTokenService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.Base64;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
@@ -35,6 +40,12 @@ public class DirectorController {
 
     private static final Logger logger = LoggerFactory.getLogger(DirectorController.class);
 
+    @Autowired
+    private SessionTokenService sessionTokenService;
+
+    @Autowired
+    private RequestPrincipal requestPrincipal;
+
     @Autowired
     private UserService userService;
 
@@ -50,6 +61,12 @@ public class DirectorController {
     @Autowired
     private CashierLogService cashierLogService;
 
+    @Autowired
+    private BalanceLedgerService balanceLedgerService;
+
+    @Autowired
+    private AgencyStatsService agencyStatsService;
+
     // Obtenir les statistiques de l'agence
     @GetMapping("/stats")
     public ResponseEntity<?> getAgencyStats(@RequestHeader("Authorization") String authHeader) {
@@ -60,9 +77,9 @@ public class DirectorController {
             }
 
             Map<String, Object> stats = new HashMap<>();
-            stats.put("totalAccounts", accountService.getAllAccounts().size());
-            stats.put("totalUsers", userService.getAllUsers().size());
-            stats.put("totalTransactions", transactionService.getAllTransactions().size());
+            stats.put("totalAccounts", accountService.countAccounts());
+            stats.put("totalUsers", userService.countUsers());
+            stats.put("totalTransactions", transactionService.countAllTransactions());
             // Ajoutez d'autres statistiques selon vos besoins
 
             return ResponseEntity.ok(stats);
@@ -172,38 +189,8 @@ public class DirectorController {
             String username = extractUsername(authHeader);
             Agency directorAgency = agencyService.getAgencyByDirectorUsername(username);
             
-            // Récupérer les statistiques
-            List<User> agencyClients = userService.getClientsByAgencyId(directorAgency.getId());
-            List<User> agencyCashiers = userService.getCashiersByAgencyId(directorAgency.getId());
-            List<Transaction> agencyTransactions = transactionService.getTransactionsByAgencyId(directorAgency.getId());
-            
-            // Calculer les statistiques mensuelles
-            LocalDateTime startOfMonth = LocalDate.now().withDayOfMonth(1).atStartOfDay();
-            List<Transaction> monthlyTransactions = agencyTransactions.stream()
-                .filter(t -> t.getDate().toInstant()
-                    .atZone(ZoneId.systemDefault())
-                    .toLocalDateTime()
-                    .isAfter(startOfMonth))
-                .collect(Collectors.toList());
-
-            double monthlyDeposits = monthlyTransactions.stream()
-                .filter(t -> "DEPOSIT".equals(t.getType()))
-                .mapToDouble(Transaction::getAmount)
-                .sum();
-
-            double monthlyWithdrawals = monthlyTransactions.stream()
-                .filter(t -> "WITHDRAW".equals(t.getType()))
-                .mapToDouble(Transaction::getAmount)
-                .sum();
-
-            Map<String, Object> statistics = new HashMap<>();
-            statistics.put("totalClients", agencyClients.size());
-            statistics.put("totalCashiers", agencyCashiers.size());
-            statistics.put("totalTransactions", agencyTransactions.size());
-            statistics.put("monthlyTransactionCount", monthlyTransactions.size());
-            statistics.put("monthlyDeposits", monthlyDeposits);
-            statistics.put("monthlyWithdrawals", monthlyWithdrawals);
-            
+            // Statistiques lues dans les agrégats journaliers de l'agence
+            Map<String, Object> statistics = agencyStatsService.getAgencyStatistics(directorAgency.getId());
             return ResponseEntity.ok(statistics);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
@@ -281,9 +268,6 @@ public class DirectorController {
             String description = request.get("description") != null ? 
                 request.get("description").toString() : "Dépôt par le directeur";
 
-            account.setBalance(account.getBalance() + amount);
-            accountService.updateAccount(account);
-
             // Créer la transaction
             Transaction transaction = new Transaction();
             transaction.setAccount(account);
@@ -293,11 +277,13 @@ public class DirectorController {
             transaction.setDate(new Date());
             transaction.setFromAccount("DIRECTOR");
             transaction.setToAccount(account.getAccountNumber());
-            transactionService.createTransaction(transaction);
+
+            double newBalance = balanceLedgerService.credit(account, amount,
+                () -> transactionService.createTransaction(transaction));
 
             return ResponseEntity.ok(Map.of(
                 "message", "Dépôt effectué avec succès",
-                "newBalance", account.getBalance()
+                "newBalance", newBalance
             ));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
@@ -326,13 +312,10 @@ public class DirectorController {
             String description = request.get("description") != null ? 
                 request.get("description").toString() : "Retrait par le directeur";
 
-            if (account.getBalance() < amount) {
+            if (balanceLedgerService.balanceOf(account) < amount) {
                 return ResponseEntity.badRequest().body(Map.of("error", "Solde insuffisant"));
             }
 
-            account.setBalance(account.getBalance() - amount);
-            accountService.updateAccount(account);
-
             // Créer la transaction
             Transaction transaction = new Transaction();
             transaction.setAccount(account);
@@ -342,11 +325,13 @@ public class DirectorController {
             transaction.setDate(new Date());
             transaction.setFromAccount(account.getAccountNumber());
             transaction.setToAccount("DIRECTOR");
-            transactionService.createTransaction(transaction);
+
+            double newBalance = balanceLedgerService.debit(account, amount,
+                () -> transactionService.createTransaction(transaction));
 
             return ResponseEntity.ok(Map.of(
                 "message", "Retrait effectué avec succès",
-                "newBalance", account.getBalance()
+                "newBalance", newBalance
             ));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
@@ -389,61 +374,56 @@ public class DirectorController {
     }
 
     @GetMapping("/cashier-logs")
-    public ResponseEntity<?> getAgencyCashierLogs(@RequestHeader("Authorization") String authHeader) {
+    public ResponseEntity<?> getAgencyCashierLogs(
+        @RequestParam(required = false) String from,
+        @RequestParam(required = false) String to,
+        @RequestParam(required = false) String cursor,
+        @RequestParam(defaultValue = "100") int limit,
+        @RequestHeader("Authorization") String authHeader
+    ) {
         try {
             String username = extractUsername(authHeader);
             Agency directorAgency = agencyService.getAgencyByDirectorUsername(username);
-            
-            // Récupérer tous les caissiers de l'agence
-            List<User> agencyCashiers = userService.getCashiersByAgencyId(directorAgency.getId());
-            
-            // Récupérer les logs pour chaque caissier
-            List<CashierLog> allLogs = new ArrayList<>();
-            for (User cashier : agencyCashiers) {
-                List<CashierLog> cashierLogs = cashierLogService.getLogsByCashier(cashier.getId());
-                allLogs.addAll(cashierLogs);
-            }
-            
-            // Trier les logs par date décroissante
-            allLogs.sort((log1, log2) -> log2.getDate().compareTo(log1.getDate()));
-            
-            // Calculer des statistiques sur les logs
-            Map<String, Object> logsStats = new HashMap<>();
-            logsStats.put("totalLogs", allLogs.size());
-            
-            // Compter les différents types d'opérations
-            Map<String, Long> operationCounts = allLogs.stream()
-                .collect(Collectors.groupingBy(CashierLog::getType, Collectors.counting()));
-            logsStats.put("operationCounts", operationCounts);
-            
-            // Compter les succès et échecs
-            long successCount = allLogs.stream()
-                .filter(log -> "SUCCESS".equals(log.getStatus()))
-                .count();
-            long failureCount = allLogs.stream()
-                .filter(log -> "FAILED".equals(log.getStatus()))
-                .count();
-            logsStats.put("successCount", successCount);
-            logsStats.put("failureCount", failureCount);
-            
-            // Calculer le montant total des opérations
-            double totalAmount = allLogs.stream()
-                .filter(log -> log.getAmount() != null)
-                .mapToDouble(CashierLog::getAmount)
-                .sum();
-            logsStats.put("totalAmount", totalAmount);
-            
-            // Retourner à la fois les logs et les statistiques
-            Map<String, Object> response = new HashMap<>();
-            response.put("logs", allLogs);
-            response.put("statistics", logsStats);
-            
+
+            // Période par défaut : les 30 derniers jours
+            LocalDateTime end = to != null ? LocalDateTime.parse(to.replace("Z", "")) : LocalDateTime.now();
+            LocalDateTime start = from != null ? LocalDateTime.parse(from.replace("Z", "")) : end.minusDays(30);
+
+            // Une page de logs de l'agence et les statistiques de la période, en deux requêtes
+            Map<String, Object> response = cashierLogService.getAgencyLogPage(
+                directorAgency.getId(), start, end, cursor, limit);
+            response.put("from", start);
+            response.put("to", end);
+
             return ResponseEntity.ok(response);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
     }
 
+    @GetMapping("/cashier-logs/archive")
+    public ResponseEntity<?> getArchivedCashierLogs(
+        @RequestParam String from,
+        @RequestParam String to,
+        @RequestParam(defaultValue = "100") int limit,
+        @RequestHeader("Authorization") String authHeader
+    ) {
+        try {
+            String username = extractUsername(authHeader);
+            Agency directorAgency = agencyService.getAgencyByDirectorUsername(username);
+
+            LocalDateTime start = LocalDateTime.parse(from.replace("Z", ""));
+            LocalDateTime end = LocalDateTime.parse(to.replace("Z", ""));
+            return ResponseEntity.ok(Map.of(
+                "logs", cashierLogService.getArchivedAgencyLogs(directorAgency.getId(), start, end, limit),
+                "from", start,
+                "to", end
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @PostMapping("/statistics/filtered")
     public ResponseEntity<?> getFilteredStatistics(
         @RequestBody Map<String, String> request,
@@ -471,7 +451,7 @@ public class DirectorController {
             logger.info("Converted dates - start: {}, end: {}", start, end);
             
             // Obtenir les statistiques
-            Map<String, Object> stats = transactionService.getAgencyStatsByDateRange(
+            AgencyStatsView stats = transactionService.getAgencyStatsByDateRange(
                 directorAgency.getId(), start, end
             );
             
@@ -485,8 +465,8 @@ public class DirectorController {
     }
 
     private String extractUsername(String authHeader) {
-        String base64Credentials = authHeader.substring("Basic".length()).trim();
-        String credentials = new String(Base64.getDecoder().decode(base64Credentials));
-        return credentials.split(":", 2)[0];
+        return requestPrincipal.current()
+            .map(AuthenticatedUser::username)
+            .orElseGet(() -> sessionTokenService.resolveUsername(authHeader));
     }
 } 
\ No newline at end of file
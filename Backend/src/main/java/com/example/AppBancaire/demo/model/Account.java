@@ -7,8 +7,16 @@ import jakarta.persistence.Id;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.Column;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import org.hibernate.annotations.DynamicUpdate;
 
 @Entity
+@DynamicUpdate
+@Table(indexes = {
+    @Index(name = "idx_account_user", columnList = "user_id"),
+    @Index(name = "idx_account_status", columnList = "status")
+})
 public class Account {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -0,0 +1,30 @@
+package com.example.bank.demo.model;
+
+/**
+ * Compte tel que renvoyé par l'API, avec les seules coordonnées du titulaire
+ * (ni mot de passe, ni agence, ni autres comptes).
+ */
+public record AccountView(
+    Long id,
+    String accountNumber,
+    Double balance,
+    String status,
+    Holder user
+) {
+
+    public record Holder(
+        Long id,
+        String username,
+        String fullName,
+        String email,
+        String phone,
+        String address
+    ) {
+    }
+
+    // Constructeur à plat pour les projections JPQL (SELECT new ...), qui ne savent pas imbriquer
+    public AccountView(Long id, String accountNumber, Double balance, String status,
+                       Long userId, String username, String fullName, String email, String phone, String address) {
+        this(id, accountNumber, balance, status, new Holder(userId, username, fullName, email, phone, address));
+    }
+}
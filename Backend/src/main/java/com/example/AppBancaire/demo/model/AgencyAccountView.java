@@ -0,0 +1,13 @@
+package com.example.bank.demo.model;
+
+/**
+ * Ligne de la liste des comptes d'une agence : uniquement ce qu'affiche l'écran caissier.
+ */
+public record AgencyAccountView(
+    Long id,
+    String accountNumber,
+    Double balance,
+    String status,
+    String holderName
+) {
+}
@@ -0,0 +1,101 @@
+package com.example.bank.demo.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * Nombre et montant cumulés des transactions d'une agence, par jour et par type.
+ * Chaque (agence, jour, type) est réparti sur plusieurs lignes (slot) pour que les
+ * écritures concurrentes ne se bloquent pas sur une même ligne ; les lectures somment les slots.
+ * agency_id vaut {@link #NO_AGENCY} pour les comptes dont le titulaire n'a pas d'agence.
+ * Les jours sont des jours UTC ({@link #ZONE}), fuseau des DATETIME stockés par la connexion MySQL.
+ */
+@Entity
+@Table(name = "agency_daily_aggregate", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_agency_daily_aggregate", columnNames = { "agency_id", "stat_day", "type", "slot" })
+})
+public class AgencyDailyAggregate {
+    public static final long NO_AGENCY = 0L;
+    public static final ZoneId ZONE = ZoneOffset.UTC;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "agency_id", nullable = false)
+    private Long agencyId;
+
+    @Column(name = "stat_day", nullable = false)
+    private LocalDate day;
+
+    @Column(nullable = false, length = 20)
+    private String type;
+
+    @Column(nullable = false)
+    private Integer slot;
+
+    @Column(name = "tx_count", nullable = false)
+    private Long count;
+
+    @Column(name = "total_amount", nullable = false)
+    private Double sum;
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getAgencyId() {
+        return agencyId;
+    }
+
+    public void setAgencyId(Long agencyId) {
+        this.agencyId = agencyId;
+    }
+
+    public LocalDate getDay() {
+        return day;
+    }
+
+    public void setDay(LocalDate day) {
+        this.day = day;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public Integer getSlot() {
+        return slot;
+    }
+
+    public void setSlot(Integer slot) {
+        this.slot = slot;
+    }
+
+    public Long getCount() {
+        return count;
+    }
+
+    public void setCount(Long count) {
+        this.count = count;
+    }
+
+    public Double getSum() {
+        return sum;
+    }
+
+    public void setSum(Double sum) {
+        this.sum = sum;
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.bank.demo.model;
+
+import java.util.List;
+
+/**
+ * Statistiques des transactions d'une agence sur une période ; agencyId est null pour toutes les agences.
+ */
+public record AgencyStatsView(
+    Long agencyId,
+    long transactionCount,
+    double deposits,
+    double withdrawals,
+    double transfersOut,
+    double transfersIn,
+    double totalAmount
+) {
+
+    /**
+     * Construit la vue à partir des lignes [type, nombre, montant] d'une requête groupée par type.
+     */
+    public static AgencyStatsView fromTypeTotals(Long agencyId, List<Object[]> rows) {
+        long count = 0;
+        double deposits = 0, withdrawals = 0, transfersOut = 0, transfersIn = 0;
+        for (Object[] row : rows) {
+            long typeCount = ((Number) row[1]).longValue();
+            double amount = row[2] != null ? ((Number) row[2]).doubleValue() : 0.0;
+            count += typeCount;
+            switch (String.valueOf(row[0])) {
+                case "DEPOSIT" -> deposits = amount;
+                case "WITHDRAW" -> withdrawals = amount;
+                case "DEBIT" -> transfersOut = amount;
+                case "CREDIT" -> transfersIn = amount;
+                default -> { }
+            }
+        }
+        return new AgencyStatsView(agencyId, count, deposits, withdrawals, transfersOut, transfersIn,
+            deposits + transfersIn - withdrawals - transfersOut);
+    }
+}
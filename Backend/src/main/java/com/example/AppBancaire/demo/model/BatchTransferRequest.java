@@ -0,0 +1,73 @@
+package com.example.bank.demo.model;
+
+import java.util.List;
+
+public class BatchTransferRequest {
+    private Long fromAccountId;
+    private String password;
+    private String description;
+    private List<Item> transfers;
+
+    public static class Item {
+        private String toAccountNumber;
+        private Double amount;
+        private String beneficiaryName;
+
+        public String getToAccountNumber() {
+            return toAccountNumber;
+        }
+
+        public void setToAccountNumber(String toAccountNumber) {
+            this.toAccountNumber = toAccountNumber;
+        }
+
+        public Double getAmount() {
+            return amount;
+        }
+
+        public void setAmount(Double amount) {
+            this.amount = amount;
+        }
+
+        public String getBeneficiaryName() {
+            return beneficiaryName;
+        }
+
+        public void setBeneficiaryName(String beneficiaryName) {
+            this.beneficiaryName = beneficiaryName;
+        }
+    }
+
+    // Getters and Setters
+    public Long getFromAccountId() {
+        return fromAccountId;
+    }
+
+    public void setFromAccountId(Long fromAccountId) {
+        this.fromAccountId = fromAccountId;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public List<Item> getTransfers() {
+        return transfers;
+    }
+
+    public void setTransfers(List<Item> transfers) {
+        this.transfers = transfers;
+    }
+}
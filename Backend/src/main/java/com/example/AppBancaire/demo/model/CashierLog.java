@@ -4,7 +4,10 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "cashier_logs")
+@Table(name = "cashier_logs", indexes = {
+    @Index(name = "idx_cashier_log_cashier_date", columnList = "cashier_id, date"),
+    @Index(name = "idx_cashier_log_date", columnList = "date")
+})
 public class CashierLog {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
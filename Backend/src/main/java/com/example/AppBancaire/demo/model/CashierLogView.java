@@ -0,0 +1,24 @@
+package com.example.bank.demo.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entrée du journal caissier telle que renvoyée par l'API, sans le caissier.
+ */
+public record CashierLogView(
+    Long id,
+    String type,
+    String description,
+    LocalDateTime date,
+    Double amount,
+    String accountNumber,
+    String userName,
+    String status,
+    String details
+) {
+
+    public static CashierLogView of(CashierLog log) {
+        return new CashierLogView(log.getId(), log.getType(), log.getDescription(), log.getDate(),
+            log.getAmount(), log.getAccountNumber(), log.getUserName(), log.getStatus(), log.getDetails());
+    }
+}
@@ -4,9 +4,21 @@ import jakarta.persistence.*;
 import java.util.Date;
 
 @Entity
+@Table(indexes = {
+    @Index(name = "idx_transaction_account_date", columnList = "account_id, date, id"),
+    @Index(name = "idx_transaction_account_type", columnList = "account_id, type"),
+    @Index(name = "idx_transaction_type_date", columnList = "type, date"),
+    @Index(name = "idx_transaction_date", columnList = "date"),
+    @Index(name = "idx_transaction_leg_date", columnList = "leg, date"),
+    @Index(name = "idx_transaction_transfer", columnList = "transfer_id")
+})
 public class Transaction {
+    // Ids alloués par blocs pour permettre l'insertion par lots JDBC (impossible avec IDENTITY)
+    public static final int ID_ALLOCATION_SIZE = 50;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transaction_seq")
+    @SequenceGenerator(name = "transaction_seq", sequenceName = "transaction_seq", allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
     private Double amount;
     private String type;
@@ -21,10 +33,25 @@ public class Transaction {
     private String fromAccount;
     private String toAccount;
 
+    // Identifiant commun aux deux jambes d'un virement
+    @Column(name = "transfer_id", length = 36)
+    private String transferId;
+
+    // PRIMARY : ligne représentant l'opération ; MIRROR : jambe crédit d'un virement
+    @Column(length = 10)
+    private String leg;
+
     @ManyToOne
     @JoinColumn(name = "category_id")
     private ExpenseCategory category;
 
+    @PrePersist
+    protected void onCreate() {
+        if (leg == null) {
+            leg = "CREDIT".equals(type) ? "MIRROR" : "PRIMARY";
+        }
+    }
+
     // Getters and Setters
     public Long getId() {
         return id;
@@ -105,4 +132,20 @@ public class Transaction {
     public void setStatus(String status) {
         this.status = status;
     }
-} 
\ No newline at end of file
+
+    public String getTransferId() {
+        return transferId;
+    }
+
+    public void setTransferId(String transferId) {
+        this.transferId = transferId;
+    }
+
+    public String getLeg() {
+        return leg;
+    }
+
+    public void setLeg(String leg) {
+        this.leg = leg;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,34 @@
+package com.example.bank.demo.model;
+
+import java.util.Date;
+
+/**
+ * Transaction telle que renvoyée par l'API : colonnes de la ligne et numéro du compte,
+ * sans le graphe compte → titulaire → agence.
+ */
+public record TransactionView(
+    Long id,
+    Double amount,
+    String type,
+    String description,
+    Date date,
+    String status,
+    String fromAccount,
+    String toAccount,
+    String accountNumber
+) {
+
+    public static TransactionView of(Transaction transaction) {
+        return new TransactionView(
+            transaction.getId(),
+            transaction.getAmount(),
+            transaction.getType(),
+            transaction.getDescription(),
+            transaction.getDate(),
+            transaction.getStatus(),
+            transaction.getFromAccount(),
+            transaction.getToAccount(),
+            transaction.getAccount() != null ? transaction.getAccount().getAccountNumber() : null
+        );
+    }
+}
@@ -7,6 +7,8 @@ public class TransferRequest {
     private String password;
     private String beneficiaryName;
     private String scheduledDateTime;
+    private String recurrence;
+    private String recurrenceEndDateTime;
 
     // Getters and Setters
     public Long getFromAccountId() {
@@ -56,4 +58,20 @@ public class TransferRequest {
     public void setScheduledDateTime(String scheduledDateTime) {
         this.scheduledDateTime = scheduledDateTime;
     }
-} 
\ No newline at end of file
+
+    public String getRecurrence() {
+        return recurrence;
+    }
+
+    public void setRecurrence(String recurrence) {
+        this.recurrence = recurrence;
+    }
+
+    public String getRecurrenceEndDateTime() {
+        return recurrenceEndDateTime;
+    }
+
+    public void setRecurrenceEndDateTime(String recurrenceEndDateTime) {
+        this.recurrenceEndDateTime = recurrenceEndDateTime;
+    }
+}
@@ -10,7 +10,9 @@ import jakarta.validation.constraints.Pattern;
 import com.fasterxml.jackson.annotation.JsonBackReference;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = {
+    @Index(name = "idx_users_agency_role", columnList = "agency_id, role")
+})
 public class User {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -46,6 +48,11 @@ public class User {
     @JoinColumn(name = "agency_id")
     private Agency agency;
 
+    // Dernier changement de mot de passe ou de droits (ms) : les jetons émis avant sont refusés
+    @JsonIgnore
+    @Column(name = "credentials_changed_at")
+    private Long credentialsChangedAt;
+
     // Getters and Setters
     public Long getId() {
         return id;
@@ -123,6 +130,14 @@ public class User {
         return agency;
     }
 
+    public Long getCredentialsChangedAt() {
+        return credentialsChangedAt;
+    }
+
+    public void setCredentialsChangedAt(Long credentialsChangedAt) {
+        this.credentialsChangedAt = credentialsChangedAt;
+    }
+
     public void setAgency(Agency agency) {
         this.agency = agency;
     }
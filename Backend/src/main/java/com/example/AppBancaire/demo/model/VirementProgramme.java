@@ -4,7 +4,10 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "virement_programme")
+@Table(name = "virement_programme", indexes = {
+    @Index(name = "idx_virement_due", columnList = "executed, date_execution"),
+    @Index(name = "idx_virement_source_date", columnList = "compte_source_id, date_execution")
+})
 public class VirementProgramme {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -17,6 +20,7 @@ public class VirementProgramme {
     private String numeroCompteDestination;
     private String beneficiaireName;
     private Double montant;
+    @Column(name = "date_execution")
     private LocalDateTime dateExecution;
     private boolean executed;
 
@@ -27,6 +31,36 @@ public class VirementProgramme {
     @Column(name = "refus_reason")
     private String refusReason;
 
+    // Ordre permanent : règle DAILY, WEEKLY, MONTHLY ou expression cron, null pour un virement unique.
+    // dateExecution porte la prochaine échéance ; une seule ligne par ordre, quelle que soit sa durée.
+    @Column(name = "recurrence_rule", length = 64)
+    private String recurrenceRule;
+
+    @Column(name = "recurrence_start")
+    private LocalDateTime recurrenceStart;
+
+    @Column(name = "recurrence_end")
+    private LocalDateTime recurrenceEnd;
+
+    @Column(name = "occurrence_index", nullable = false)
+    private int occurrenceIndex;
+
+    @Column(name = "last_execution_date")
+    private LocalDateTime lastExecutionDate;
+
+    // Résultat de la dernière échéance (EXECUTE ou REFUSE, motif dans refusReason) ; status
+    // d'un ordre permanent repasse à EN_ATTENTE pour l'échéance suivante
+    @Enumerated(EnumType.STRING)
+    @Column(name = "last_status", length = 20)
+    private VirementStatus lastStatus;
+
+    // Nœud qui exécute le virement et fin de son bail ; un bail expiré peut être repris
+    @Column(name = "claimed_by", length = 64)
+    private String claimedBy;
+
+    @Column(name = "claimed_until")
+    private LocalDateTime claimedUntil;
+
     // Getters et Setters
     public Long getId() {
         return id;
@@ -99,4 +133,68 @@ public class VirementProgramme {
     public void setRefusReason(String refusReason) {
         this.refusReason = refusReason;
     }
+
+    public String getClaimedBy() {
+        return claimedBy;
+    }
+
+    public void setClaimedBy(String claimedBy) {
+        this.claimedBy = claimedBy;
+    }
+
+    public LocalDateTime getClaimedUntil() {
+        return claimedUntil;
+    }
+
+    public void setClaimedUntil(LocalDateTime claimedUntil) {
+        this.claimedUntil = claimedUntil;
+    }
+
+    public String getRecurrenceRule() {
+        return recurrenceRule;
+    }
+
+    public void setRecurrenceRule(String recurrenceRule) {
+        this.recurrenceRule = recurrenceRule;
+    }
+
+    public LocalDateTime getRecurrenceStart() {
+        return recurrenceStart;
+    }
+
+    public void setRecurrenceStart(LocalDateTime recurrenceStart) {
+        this.recurrenceStart = recurrenceStart;
+    }
+
+    public LocalDateTime getRecurrenceEnd() {
+        return recurrenceEnd;
+    }
+
+    public void setRecurrenceEnd(LocalDateTime recurrenceEnd) {
+        this.recurrenceEnd = recurrenceEnd;
+    }
+
+    public int getOccurrenceIndex() {
+        return occurrenceIndex;
+    }
+
+    public void setOccurrenceIndex(int occurrenceIndex) {
+        this.occurrenceIndex = occurrenceIndex;
+    }
+
+    public LocalDateTime getLastExecutionDate() {
+        return lastExecutionDate;
+    }
+
+    public void setLastExecutionDate(LocalDateTime lastExecutionDate) {
+        this.lastExecutionDate = lastExecutionDate;
+    }
+
+    public VirementStatus getLastStatus() {
+        return lastStatus;
+    }
+
+    public void setLastStatus(VirementStatus lastStatus) {
+        this.lastStatus = lastStatus;
+    }
 } 
\ No newline at end of file
@@ -1,17 +1,62 @@
 package com.example.bank.demo.repository;
 
 import com.example.bank.demo.model.Account;
+import com.example.bank.demo.model.AccountView;
+import com.example.bank.demo.model.AgencyAccountView;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface AccountRepository extends JpaRepository<Account, Long> {
     Optional<Account> findByAccountNumber(String accountNumber);
+
+    // Titulaire et agence chargés dans la même requête (relations EAGER : sinon un SELECT par compte)
+    @Query("SELECT a FROM Account a LEFT JOIN FETCH a.user u LEFT JOIN FETCH u.agency " +
+           "WHERE a.accountNumber IN :accountNumbers")
+    List<Account> findByAccountNumberIn(@Param("accountNumbers") Collection<String> accountNumbers);
+
     List<Account> findByUserId(Long userId);
     void deleteByUserId(Long userId);
     
-    @Query("SELECT a FROM Account a WHERE a.user.agency.id = :agencyId AND a.status != 'CLOSED'")
-    List<Account> findActiveAccountsByAgencyId(@Param("agencyId") Long agencyId);
+    // Projection commune des listes de comptes exposées par l'API
+    String ACCOUNT_VIEW = "SELECT new com.example.bank.demo.model.AccountView(a.id, a.accountNumber, a.balance, a.status, " +
+        "u.id, u.username, u.fullName, u.email, u.phone, u.address) FROM Account a JOIN a.user u ";
+
+    @Query(ACCOUNT_VIEW + "WHERE u.agency.id = :agencyId AND a.status != 'CLOSED'")
+    List<AccountView> findActiveAccountsByAgencyId(@Param("agencyId") Long agencyId);
+
+    @Query(ACCOUNT_VIEW + "WHERE a.status != 'CLOSED'")
+    List<AccountView> findActiveAccounts();
+
+    // Page suivante (ids croissants) des comptes actifs d'une agence, projetée sans charger les entités
+    @Query("SELECT new com.example.bank.demo.model.AgencyAccountView(a.id, a.accountNumber, a.balance, a.status, u.fullName) " +
+           "FROM Account a JOIN a.user u " +
+           "WHERE u.agency.id = :agencyId AND a.status != 'CLOSED' AND a.id > :afterId " +
+           "ORDER BY a.id")
+    Slice<AgencyAccountView> findActiveAccountViewsByAgencyId(
+        @Param("agencyId") Long agencyId,
+        @Param("afterId") Long afterId,
+        Pageable pageable
+    );
+
+    @Query("SELECT COUNT(a) FROM Account a WHERE a.user.agency.id = :agencyId AND a.status != 'CLOSED'")
+    long countActiveAccountsByAgencyId(@Param("agencyId") Long agencyId);
+
+    // Verrou de ligne : à appeler dans une transaction, par ordre croissant d'id
+    @Query(value = "SELECT balance FROM account WHERE id = :id FOR UPDATE", nativeQuery = true)
+    Double lockBalanceById(@Param("id") Long id);
+
+    // Lignes [id, balance] verrouillées dans l'ordre de la clé primaire
+    @Query(value = "SELECT id, balance FROM account WHERE id IN (:ids) ORDER BY id FOR UPDATE", nativeQuery = true)
+    List<Object[]> lockBalancesByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("UPDATE Account a SET a.balance = :balance WHERE a.id = :id")
+    int updateBalanceById(@Param("id") Long id, @Param("balance") Double balance);
 } 
\ No newline at end of file
@@ -0,0 +1,29 @@
+package com.example.bank.demo.repository;
+
+import com.example.bank.demo.model.AgencyDailyAggregate;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface AgencyDailyAggregateRepository extends JpaRepository<AgencyDailyAggregate, Long> {
+
+    // Chaque ligne : [type, nombre, montant]
+    @Query("SELECT a.type, SUM(a.count), SUM(a.sum) FROM AgencyDailyAggregate a " +
+           "WHERE a.agencyId = :agencyId AND a.day BETWEEN :from AND :to GROUP BY a.type")
+    List<Object[]> sumByTypeForAgency(
+        @Param("agencyId") Long agencyId,
+        @Param("from") LocalDate from,
+        @Param("to") LocalDate to
+    );
+
+    // Chaque ligne : [type, nombre, montant], toutes agences confondues
+    @Query("SELECT a.type, SUM(a.count), SUM(a.sum) FROM AgencyDailyAggregate a " +
+           "WHERE a.day BETWEEN :from AND :to GROUP BY a.type")
+    List<Object[]> sumByType(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Query("SELECT COALESCE(SUM(a.count), 0) FROM AgencyDailyAggregate a WHERE a.agencyId = :agencyId")
+    long countAllForAgency(@Param("agencyId") Long agencyId);
+}
@@ -1,11 +1,56 @@
 package com.example.bank.demo.repository;
 
 import com.example.bank.demo.model.CashierLog;
+import com.example.bank.demo.model.CashierLogView;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface CashierLogRepository extends JpaRepository<CashierLog, Long> {
     List<CashierLog> findByCashierIdOrderByDateDesc(Long cashierId);
+
+    String LOG_VIEW = "SELECT new com.example.bank.demo.model.CashierLogView(l.id, l.type, l.description, l.date, " +
+        "l.amount, l.accountNumber, l.userName, l.status, l.details) FROM CashierLog l ";
+
+    // Journaux des caissiers d'une agence sur [from, to[
+    String AGENCY_LOGS = "JOIN l.cashier c WHERE c.agency.id = :agencyId AND c.role = 'ROLE_CASHIER' " +
+        "AND l.date >= :from AND l.date < :to ";
+
+    @Query(LOG_VIEW + "WHERE l.cashier.id = :cashierId ORDER BY l.date DESC")
+    List<CashierLogView> findViewsByCashierId(@Param("cashierId") Long cashierId);
+
+    // Pagination par clé (date, id) : première page puis pages suivantes à partir d'un curseur
+    @Query(LOG_VIEW + AGENCY_LOGS + "ORDER BY l.date DESC, l.id DESC")
+    Slice<CashierLogView> findAgencyLogViews(
+        @Param("agencyId") Long agencyId,
+        @Param("from") LocalDateTime from,
+        @Param("to") LocalDateTime to,
+        Pageable pageable
+    );
+
+    @Query(LOG_VIEW + AGENCY_LOGS + "AND (l.date < :date OR (l.date = :date AND l.id < :id)) " +
+           "ORDER BY l.date DESC, l.id DESC")
+    Slice<CashierLogView> findAgencyLogViewsBefore(
+        @Param("agencyId") Long agencyId,
+        @Param("from") LocalDateTime from,
+        @Param("to") LocalDateTime to,
+        @Param("date") LocalDateTime date,
+        @Param("id") Long id,
+        Pageable pageable
+    );
+
+    // Chaque ligne : [type, status, nombre, montant]
+    @Query("SELECT l.type, l.status, COUNT(l), COALESCE(SUM(l.amount), 0) FROM CashierLog l " + AGENCY_LOGS +
+           "GROUP BY l.type, l.status")
+    List<Object[]> sumAgencyLogsByTypeAndStatus(
+        @Param("agencyId") Long agencyId,
+        @Param("from") LocalDateTime from,
+        @Param("to") LocalDateTime to
+    );
     List<CashierLog> findAllByOrderByDateDesc();
     void deleteByCashierId(Long cashierId);
 } 
\ No newline at end of file
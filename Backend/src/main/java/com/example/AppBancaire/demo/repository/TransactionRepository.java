@@ -1,6 +1,9 @@
 package com.example.bank.demo.repository;
 
 import com.example.bank.demo.model.Transaction;
+import com.example.bank.demo.model.TransactionView;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -8,29 +11,55 @@ import java.util.Date;
 import java.util.List;
 
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
+    // Projection commune des lectures exposées par l'API
+    String TRANSACTION_VIEW = "SELECT new com.example.bank.demo.model.TransactionView(" +
+        "t.id, t.amount, t.type, t.description, t.date, t.status, t.fromAccount, t.toAccount, a.accountNumber) " +
+        "FROM Transaction t JOIN t.account a ";
+
     List<Transaction> findByAccountIdOrderByDateDesc(Long accountId);
-    List<Transaction> findByAccount_UserIdOrderByDateDesc(Long userId);
-    List<Transaction> findByAccount_User_IdAndType(Long userId, String type);
+
+    // Jointure interne explicite : la jointure externe des requêtes dérivées empêche de partir
+    // de idx_account_user et impose un parcours complet de transaction
+    @Query("SELECT t FROM Transaction t JOIN t.account a WHERE a.user.id = :userId ORDER BY t.date DESC")
+    List<Transaction> findByAccount_UserIdOrderByDateDesc(@Param("userId") Long userId);
+
+    @Query("SELECT t FROM Transaction t JOIN t.account a WHERE a.user.id = :userId AND t.type = :type")
+    List<Transaction> findByAccount_User_IdAndType(@Param("userId") Long userId, @Param("type") String type);
+
+    // Pagination par clé (date, id) : première page puis pages suivantes à partir d'un curseur
+    Slice<Transaction> findByAccountIdOrderByDateDescIdDesc(Long accountId, Pageable pageable);
+
+    @Query("SELECT t FROM Transaction t WHERE t.account.id = :accountId " +
+           "AND (t.date < :date OR (t.date = :date AND t.id < :id)) " +
+           "ORDER BY t.date DESC, t.id DESC")
+    Slice<Transaction> findByAccountIdBefore(
+        @Param("accountId") Long accountId,
+        @Param("date") Date date,
+        @Param("id") Long id,
+        Pageable pageable
+    );
     
-    @Query("SELECT t FROM Transaction t WHERE t.type IN ('DEPOSIT', 'WITHDRAW') OR " +
-           "(t.type = 'DEBIT' AND NOT EXISTS (" +
-           "    SELECT t2 FROM Transaction t2 " +
-           "    WHERE t2.type = 'CREDIT' " +
-           "    AND t2.fromAccount = t.toAccount " +
-           "    AND t2.toAccount = t.fromAccount " +
-           "    AND t2.amount = t.amount " +
-           "    AND t2.date = t.date" +
-           ")) ORDER BY t.date DESC")
-    List<Transaction> findAllOrderByDateDesc();
+    // La jambe crédit d'un virement (leg = 'MIRROR') est exclue : chaque opération n'apparaît qu'une fois.
+    // leg IS NULL : lignes antérieures pas encore traitées par TransferIdBackfillService, dont le
+    // filtre sur le type suffit à écarter les crédits (accès ref_or_null sur idx_transaction_leg_date)
+    @Query(TRANSACTION_VIEW + "WHERE (t.leg = 'PRIMARY' OR t.leg IS NULL) " +
+           "AND t.type IN ('DEPOSIT', 'WITHDRAW', 'DEBIT') ORDER BY t.date DESC")
+    List<TransactionView> findAllOrderByDateDesc();
 
-    void deleteByAccountId(Long accountId);
+    @Query("SELECT COUNT(t) FROM Transaction t WHERE (t.leg = 'PRIMARY' OR t.leg IS NULL) " +
+           "AND t.type IN ('DEPOSIT', 'WITHDRAW', 'DEBIT')")
+    long countAllOperations();
 
-    @Query("SELECT DISTINCT t FROM Transaction t " +
-           "JOIN FETCH t.account acc " +
-           "JOIN FETCH acc.user u " +
-           "WHERE u.agency.id = :agencyId " +
-           "ORDER BY t.date DESC")
-    List<Transaction> findTransactionsByAgencyId(Long agencyId);
+    @Query(TRANSACTION_VIEW + "WHERE a.id = :accountId ORDER BY t.date DESC")
+    List<TransactionView> findViewsByAccountId(@Param("accountId") Long accountId);
+
+    @Query(TRANSACTION_VIEW + "WHERE a.user.id = :userId ORDER BY t.date DESC")
+    List<TransactionView> findViewsByUserId(@Param("userId") Long userId);
+
+    @Query(TRANSACTION_VIEW + "JOIN a.user u WHERE u.agency.id = :agencyId ORDER BY t.date DESC")
+    List<TransactionView> findViewsByAgencyId(@Param("agencyId") Long agencyId);
+
+    void deleteByAccountId(Long accountId);
 
     @Query("SELECT t FROM Transaction t " +
            "JOIN FETCH t.account a " +
@@ -46,30 +75,39 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
         @Param("endDate") Date endDate
     );
 
-    @Query("SELECT COUNT(t) FROM Transaction t " +
+    // Prédicat sur t.date seul : servi par idx_transaction_date
+    List<Transaction> findByDateAfterOrderByDateDesc(Date date);
+
+    // Chaque ligne : [type, nombre, montant], toutes agences confondues
+    @Query("SELECT t.type, COUNT(t), COALESCE(SUM(t.amount), 0) FROM Transaction t " +
+           "WHERE t.date > :date GROUP BY t.type")
+    List<Object[]> sumByTypeAfterDate(@Param("date") Date date);
+
+    // Chaque ligne : [type, nombre, montant], en un seul passage sur la période
+    @Query("SELECT t.type, COUNT(t), COALESCE(SUM(t.amount), 0) FROM Transaction t " +
            "JOIN t.account a " +
            "JOIN a.user u " +
            "WHERE u.agency.id = :agencyId " +
            "AND t.date >= :startDate " +
            "AND t.date <= :endDate " +
-           "AND t.status = 'SUCCESS'")
-    Long countTransactionsByAgencyAndDateRange(
+           "AND t.status = 'SUCCESS' " +
+           "GROUP BY t.type")
+    List<Object[]> sumByTypeForAgencyAndDateRange(
         @Param("agencyId") Long agencyId,
         @Param("startDate") Date startDate,
         @Param("endDate") Date endDate
     );
 
-    @Query("SELECT COALESCE(SUM(t.amount), 0) FROM Transaction t " +
+    // Chaque ligne : [agencyId, type, nombre, montant], pour toutes les agences
+    @Query("SELECT u.agency.id, t.type, COUNT(t), COALESCE(SUM(t.amount), 0) FROM Transaction t " +
            "JOIN t.account a " +
            "JOIN a.user u " +
-           "WHERE u.agency.id = :agencyId " +
-           "AND t.type = :type " +
+           "WHERE u.agency IS NOT NULL " +
            "AND t.date >= :startDate " +
            "AND t.date <= :endDate " +
-           "AND t.status = 'SUCCESS'")
-    Double sumAmountByTypeAndDateRange(
-        @Param("agencyId") Long agencyId,
-        @Param("type") String type,
+           "AND t.status = 'SUCCESS' " +
+           "GROUP BY u.agency.id, t.type")
+    List<Object[]> sumByAgencyAndTypeForDateRange(
         @Param("startDate") Date startDate,
         @Param("endDate") Date endDate
     );
@@ -1,6 +1,8 @@
 package com.example.bank.demo.repository;
 
 import com.example.bank.demo.model.User;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import java.util.List;
@@ -10,4 +12,10 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByUsername(String username);
     boolean existsByUsername(String username);
     List<User> findByRoleAndAgency_Id(String role, Long agencyId);
+    long countByRoleAndAgency_Id(String role, Long agencyId);
+    long countByRole(String role);
+    List<User> findByRole(String role);
+
+    // Page suivante (ids croissants) de la liste d'administration
+    Slice<User> findByIdGreaterThanOrderByIdAsc(Long afterId, Pageable pageable);
 } 
\ No newline at end of file
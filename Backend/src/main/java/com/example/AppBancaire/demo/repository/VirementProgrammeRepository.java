@@ -1,11 +1,49 @@
 package com.example.bank.demo.repository;
 
 import com.example.bank.demo.model.VirementProgramme;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface VirementProgrammeRepository extends JpaRepository<VirementProgramme, Long> {
     List<VirementProgramme> findByCompteSource_User_IdOrderByDateExecutionDesc(Long userId);
-    List<VirementProgramme> findByDateExecutionBeforeAndExecutedFalse(LocalDateTime date);
-} 
\ No newline at end of file
+
+    // Chaque ligne : [id, compte_source_id] ; les lignes déjà verrouillées par un autre nœud sont sautées
+    @Query(value = "SELECT id, compte_source_id FROM virement_programme " +
+                   "WHERE executed = false AND date_execution <= :now " +
+                   "AND (claimed_until IS NULL OR claimed_until < :now) " +
+                   "ORDER BY date_execution, id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Object[]> lockDueTransfers(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    @Modifying
+    @Query("UPDATE VirementProgramme v SET v.claimedBy = :node, v.claimedUntil = :until WHERE v.id IN :ids")
+    int claim(@Param("ids") Collection<Long> ids, @Param("node") String node, @Param("until") LocalDateTime until);
+
+    // Annulation : attend la fin d'une exécution en cours sur la même ligne
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT v FROM VirementProgramme v WHERE v.id = :id")
+    Optional<VirementProgramme> findByIdForUpdate(@Param("id") Long id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT v FROM VirementProgramme v WHERE v.id = :id AND v.executed = false AND v.claimedBy = :node")
+    Optional<VirementProgramme> findClaimedForUpdate(@Param("id") Long id, @Param("node") String node);
+
+    // Mêmes conditions que lockDueTransfers, restreintes aux virements armés dans la roue temporelle
+    @Query(value = "SELECT id, compte_source_id FROM virement_programme " +
+                   "WHERE id IN (:ids) AND executed = false AND date_execution <= :now " +
+                   "AND (claimed_until IS NULL OR claimed_until < :now) " +
+                   "ORDER BY date_execution, id FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Object[]> lockDueTransfersByIds(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    // Chaque ligne : [id, date d'exécution] des virements non exécutés échus sur ]from, to]
+    @Query("SELECT v.id, v.dateExecution FROM VirementProgramme v " +
+           "WHERE v.executed = false AND v.dateExecution > :from AND v.dateExecution <= :to")
+    List<Object[]> findPendingBetween(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+}
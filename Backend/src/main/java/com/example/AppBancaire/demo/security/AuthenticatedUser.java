@@ -0,0 +1,18 @@
+package com.example.bank.demo.security;
+
+import com.example.bank.demo.model.User;
+
+/**
+ * Utilisateur de la requête courante, réduit à ce qu'il faut pour les contrôles d'accès.
+ */
+public record AuthenticatedUser(Long id, String username, String role, Long agencyId) {
+
+    public static AuthenticatedUser of(User user) {
+        return new AuthenticatedUser(user.getId(), user.getUsername(), user.getRole(),
+            user.getAgency() != null ? user.getAgency().getId() : null);
+    }
+
+    public boolean hasRole(String expectedRole) {
+        return expectedRole.equals(role);
+    }
+}
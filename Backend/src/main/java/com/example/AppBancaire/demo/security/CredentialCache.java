@@ -0,0 +1,88 @@
+package com.example.bank.demo.security;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache des vérifications de mot de passe réussies, pour ne pas payer BCrypt à chaque virement.
+ * La clé est le nom d'utilisateur suivi d'un HMAC du mot de passe présenté (clé aléatoire tirée
+ * au démarrage) : le mot de passe en clair n'est jamais conservé. La valeur est le hash BCrypt
+ * vérifié ; un changement de mot de passe modifie ce hash et rend l'entrée caduque même sans
+ * appel à {@link #invalidate}. Les échecs ne sont pas mis en cache.
+ */
+@Component
+public class CredentialCache {
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    private final Cache<String, String> verified;
+    private final SecretKeySpec key;
+    private final Counter hits;
+    private final Counter misses;
+
+    public CredentialCache(@Value("${bank.auth.credential-cache.ttl-seconds:300}") long ttlSeconds,
+                           @Value("${bank.auth.credential-cache.max-size:10000}") long maxSize,
+                           MeterRegistry meterRegistry) {
+        this.verified = CacheBuilder.newBuilder()
+            .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+            .maximumSize(maxSize)
+            .build();
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        this.key = new SecretKeySpec(secret, HMAC_ALGORITHM);
+        this.hits = Counter.builder("bank.auth.credential-cache.hits")
+            .description("Mots de passe vérifiés sans BCrypt")
+            .register(meterRegistry);
+        this.misses = Counter.builder("bank.auth.credential-cache.misses")
+            .description("Mots de passe vérifiés par BCrypt")
+            .register(meterRegistry);
+    }
+
+    public boolean matches(String username, String rawPassword, String encodedPassword) {
+        if (rawPassword == null || encodedPassword == null) {
+            return false;
+        }
+        String cacheKey = username + ':' + hmac(rawPassword);
+        if (encodedPassword.equals(verified.getIfPresent(cacheKey))) {
+            hits.increment();
+            return true;
+        }
+        misses.increment();
+        boolean matches = passwordEncoder.matches(rawPassword, encodedPassword);
+        if (matches) {
+            verified.put(cacheKey, encodedPassword);
+        }
+        return matches;
+    }
+
+    public void invalidate(String username) {
+        String prefix = username + ':';
+        verified.asMap().keySet().removeIf(cacheKey -> cacheKey.startsWith(prefix));
+    }
+
+    private String hmac(String rawPassword) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(key);
+            return Base64.getEncoder().encodeToString(mac.doFinal(rawPassword.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
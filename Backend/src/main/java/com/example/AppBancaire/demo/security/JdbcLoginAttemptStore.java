@@ -0,0 +1,104 @@
+package com.example.bank.demo.security;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * États partagés par tous les nœuds dans la table login_attempt_state.
+ * Chaque mise à jour est une comparaison-échange sur la colonne version : deux nœuds
+ * qui enregistrent un échec en même temps ne perdent aucune tentative.
+ * Les lignes inactives depuis une journée sont purgées périodiquement.
+ */
+@Component
+@ConditionalOnProperty(name = "bank.security.login-attempts.store", havingValue = "jdbc")
+public class JdbcLoginAttemptStore implements LoginAttemptStore {
+    private static final int MAX_RETRIES = 10;
+
+    private record VersionedState(LoginAttemptState state, long version, long expiresAt) {
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    public void createTable() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS login_attempt_state (" +
+            "username VARCHAR(255) NOT NULL PRIMARY KEY, attempts INT NOT NULL, cycles INT NOT NULL, " +
+            "blocked_until BIGINT NOT NULL, attempts_expire_at BIGINT NOT NULL, " +
+            "expires_at BIGINT NOT NULL, version BIGINT NOT NULL)");
+    }
+
+    @Override
+    public LoginAttemptState get(String username) {
+        VersionedState row = read(username);
+        return row != null && row.expiresAt() > System.currentTimeMillis() ? row.state() : null;
+    }
+
+    @Override
+    public LoginAttemptState compute(String username, UnaryOperator<LoginAttemptState> update) {
+        for (int attempt = 0; attempt < MAX_RETRIES; attempt++) {
+            long now = System.currentTimeMillis();
+            VersionedState row = read(username);
+            LoginAttemptState current = row != null && row.expiresAt() > now ? row.state() : null;
+            LoginAttemptState next = update.apply(current);
+
+            if (next == null) {
+                if (row == null || jdbcTemplate.update("DELETE FROM login_attempt_state WHERE username = ? AND version = ?",
+                        username, row.version()) == 1) {
+                    return null;
+                }
+                continue;
+            }
+
+            long expiresAt = now + LoginAttemptService.STATE_TTL_MILLIS;
+            if (row == null) {
+                try {
+                    jdbcTemplate.update("INSERT INTO login_attempt_state (username, attempts, cycles, blocked_until, " +
+                        "attempts_expire_at, expires_at, version) VALUES (?, ?, ?, ?, ?, ?, 0)",
+                        username, next.attempts(), next.cycles(), next.blockedUntil(), next.attemptsExpireAt(), expiresAt);
+                    return next;
+                } catch (DuplicateKeyException e) {
+                    continue;
+                }
+            }
+            int updated = jdbcTemplate.update("UPDATE login_attempt_state SET attempts = ?, cycles = ?, blocked_until = ?, " +
+                "attempts_expire_at = ?, expires_at = ?, version = version + 1 WHERE username = ? AND version = ?",
+                next.attempts(), next.cycles(), next.blockedUntil(), next.attemptsExpireAt(), expiresAt,
+                username, row.version());
+            if (updated == 1) {
+                return next;
+            }
+        }
+        throw new RuntimeException("Mise à jour des tentatives de connexion impossible pour " + username);
+    }
+
+    @Override
+    public void remove(String username) {
+        jdbcTemplate.update("DELETE FROM login_attempt_state WHERE username = ?", username);
+    }
+
+    @Scheduled(fixedDelayString = "${bank.security.login-attempts.cleanup-ms:3600000}")
+    public void purgeExpired() {
+        jdbcTemplate.update("DELETE FROM login_attempt_state WHERE expires_at <= ?", System.currentTimeMillis());
+    }
+
+    private VersionedState read(String username) {
+        List<VersionedState> rows = jdbcTemplate.query(
+            "SELECT attempts, cycles, blocked_until, attempts_expire_at, expires_at, version " +
+            "FROM login_attempt_state WHERE username = ?",
+            (rs, rowNum) -> new VersionedState(
+                new LoginAttemptState(rs.getInt("attempts"), rs.getInt("cycles"),
+                    rs.getLong("blocked_until"), rs.getLong("attempts_expire_at")),
+                rs.getLong("version"), rs.getLong("expires_at")),
+            username);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+}
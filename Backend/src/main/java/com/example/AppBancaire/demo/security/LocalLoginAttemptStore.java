@@ -0,0 +1,43 @@
+package com.example.bank.demo.security;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+/**
+ * États en mémoire, bornés en nombre et oubliés après une journée sans échec :
+ * des noms d'utilisateur aléatoires ne peuvent pas faire grossir la table sans limite.
+ */
+@Component
+@ConditionalOnProperty(name = "bank.security.login-attempts.store", havingValue = "local", matchIfMissing = true)
+public class LocalLoginAttemptStore implements LoginAttemptStore {
+
+    private final Cache<String, LoginAttemptState> states;
+
+    public LocalLoginAttemptStore(@Value("${bank.security.login-attempts.max-entries:100000}") long maxEntries) {
+        this.states = CacheBuilder.newBuilder()
+            .maximumSize(maxEntries)
+            .expireAfterWrite(LoginAttemptService.STATE_TTL_MILLIS, TimeUnit.MILLISECONDS)
+            .build();
+    }
+
+    @Override
+    public LoginAttemptState get(String username) {
+        return states.getIfPresent(username);
+    }
+
+    @Override
+    public LoginAttemptState compute(String username, UnaryOperator<LoginAttemptState> update) {
+        return states.asMap().compute(username, (key, state) -> update.apply(state));
+    }
+
+    @Override
+    public void remove(String username) {
+        states.invalidate(username);
+    }
+}
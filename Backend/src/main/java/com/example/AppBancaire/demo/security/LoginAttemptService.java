@@ -1,134 +1,77 @@
 package com.example.bank.demo.security;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.ExecutionException;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 
+/**
+ * Limitation des échecs de connexion : après MAX_ATTEMPTS échecs, blocage de BLOCK_DURATION_MINUTES ;
+ * au MAX_BLOCK_CYCLES-ième blocage, blocage de LONG_BLOCK_DURATION_HOURS.
+ * L'état de chaque utilisateur tient dans un {@link LoginAttemptState} mis à jour atomiquement
+ * par le {@link LoginAttemptStore} ; un état sans échec depuis STATE_TTL_MILLIS est oublié.
+ */
 @Service
 public class LoginAttemptService {
     private static final int MAX_ATTEMPTS = 3;
     private static final int BLOCK_DURATION_MINUTES = 5;
     private static final int LONG_BLOCK_DURATION_HOURS = 24;
     private static final int MAX_BLOCK_CYCLES = 3;
-    
-    private LoadingCache<String, Integer> attemptsCache;
-    private ConcurrentHashMap<String, Long> blockCache;
-    private ConcurrentHashMap<String, Integer> blockCyclesCache;
-    private ConcurrentHashMap<String, Boolean> longBlockCache;
 
-    public LoginAttemptService() {
-        attemptsCache = CacheBuilder.newBuilder()
-            .expireAfterWrite(BLOCK_DURATION_MINUTES, TimeUnit.MINUTES)
-            .build(new CacheLoader<String, Integer>() {
-                @Override
-                public Integer load(String key) {
-                    return 0;
-                }
-            });
-        blockCache = new ConcurrentHashMap<>();
-        blockCyclesCache = new ConcurrentHashMap<>();
-        longBlockCache = new ConcurrentHashMap<>();
-    }
+    static final long STATE_TTL_MILLIS =
+        TimeUnit.HOURS.toMillis(LONG_BLOCK_DURATION_HOURS) + TimeUnit.MINUTES.toMillis(BLOCK_DURATION_MINUTES);
+
+    @Autowired
+    private LoginAttemptStore store;
 
     public void loginSucceeded(String username) {
-        attemptsCache.invalidate(username);
-        blockCache.remove(username);
-        blockCyclesCache.remove(username);
-        longBlockCache.remove(username);
+        store.remove(username);
     }
 
     public void loginFailed(String username) {
-        // Vérifier si l'utilisateur est en blocage long
-        if (isLongBlocked(username)) {
-            return;
-        }
-
-        int attempts = 0;
-        try {
-            attempts = attemptsCache.get(username);
-        } catch (ExecutionException e) {
-            attempts = 0;
-        }
-        attempts++;
-        attemptsCache.put(username, attempts);
-
-        if (attempts >= MAX_ATTEMPTS) {
-            blockCache.put(username, System.currentTimeMillis());
-            int cycles = blockCyclesCache.getOrDefault(username, 0) + 1;
-            blockCyclesCache.put(username, cycles);
-
-            if (cycles >= MAX_BLOCK_CYCLES) {
-                longBlockCache.put(username, true);
-                blockCache.put(username, System.currentTimeMillis());
+        store.compute(username, stored -> {
+            long now = System.currentTimeMillis();
+            LoginAttemptState state = LoginAttemptState.current(stored, now, MAX_BLOCK_CYCLES);
+            if (state != null && state.isBlocked(now)) {
+                // Échec pendant un blocage : rien ne change
+                return state;
             }
-        }
-    }
-
-    public boolean isBlocked(String username) {
-        if (isLongBlocked(username)) {
-            return true;
-        }
-
-        Long blockTime = blockCache.get(username);
-        if (blockTime != null) {
-            long elapsedTime = System.currentTimeMillis() - blockTime;
-            if (elapsedTime < TimeUnit.MINUTES.toMillis(BLOCK_DURATION_MINUTES)) {
-                return true;
-            } else {
-                if (!isLongBlocked(username)) {
-                    blockCache.remove(username);
-                    attemptsCache.invalidate(username);
-                }
-                return false;
+            int attempts = (state != null ? state.attempts() : 0) + 1;
+            int cycles = state != null ? state.cycles() : 0;
+            if (attempts < MAX_ATTEMPTS) {
+                return new LoginAttemptState(attempts, cycles, 0,
+                    now + TimeUnit.MINUTES.toMillis(BLOCK_DURATION_MINUTES));
             }
-        }
-        return false;
+            cycles++;
+            long blockDuration = cycles >= MAX_BLOCK_CYCLES
+                ? TimeUnit.HOURS.toMillis(LONG_BLOCK_DURATION_HOURS)
+                : TimeUnit.MINUTES.toMillis(BLOCK_DURATION_MINUTES);
+            return new LoginAttemptState(attempts, cycles, now + blockDuration, 0);
+        });
     }
 
-    private boolean isLongBlocked(String username) {
-        if (longBlockCache.getOrDefault(username, false)) {
-            Long blockTime = blockCache.get(username);
-            if (blockTime != null) {
-                long elapsedTime = System.currentTimeMillis() - blockTime;
-                if (elapsedTime < TimeUnit.HOURS.toMillis(LONG_BLOCK_DURATION_HOURS)) {
-                    return true;
-                } else {
-                    // Réinitialiser après 24h
-                    longBlockCache.remove(username);
-                    blockCache.remove(username);
-                    blockCyclesCache.remove(username);
-                    attemptsCache.invalidate(username);
-                }
-            }
-        }
-        return false;
+    public boolean isBlocked(String username) {
+        LoginAttemptState state = current(username);
+        return state != null && state.isBlocked(System.currentTimeMillis());
     }
 
+    /**
+     * Temps de blocage restant, en heures pour un blocage long et en minutes sinon.
+     */
     public long getRemainingBlockTime(String username) {
-        Long blockTime = blockCache.get(username);
-        if (blockTime != null) {
-            long elapsedTime = System.currentTimeMillis() - blockTime;
-            if (longBlockCache.getOrDefault(username, false)) {
-                return TimeUnit.HOURS.toHours(LONG_BLOCK_DURATION_HOURS) - 
-                       TimeUnit.MILLISECONDS.toHours(elapsedTime);
-            } else {
-                return TimeUnit.MINUTES.toMinutes(BLOCK_DURATION_MINUTES) - 
-                       TimeUnit.MILLISECONDS.toMinutes(elapsedTime);
-            }
+        LoginAttemptState state = current(username);
+        long now = System.currentTimeMillis();
+        if (state == null || !state.isBlocked(now)) {
+            return 0;
         }
-        return 0;
+        long remaining = state.blockedUntil() - now;
+        TimeUnit unit = state.cycles() >= MAX_BLOCK_CYCLES ? TimeUnit.HOURS : TimeUnit.MINUTES;
+        long unitMillis = unit.toMillis(1);
+        return (remaining + unitMillis - 1) / unitMillis;
     }
 
     public int getAttempts(String username) {
-        try {
-            return attemptsCache.get(username);
-        } catch (ExecutionException e) {
-            return 0;
-        }
+        LoginAttemptState state = current(username);
+        return state != null ? state.attempts() : 0;
     }
 
     public int getRemainingAttempts(String username) {
@@ -136,10 +79,16 @@ public class LoginAttemptService {
     }
 
     public boolean isInLongBlock(String username) {
-        return longBlockCache.getOrDefault(username, false);
+        LoginAttemptState state = current(username);
+        return state != null && state.cycles() >= MAX_BLOCK_CYCLES && state.isBlocked(System.currentTimeMillis());
     }
 
     public int getBlockCycles(String username) {
-        return blockCyclesCache.getOrDefault(username, 0);
+        LoginAttemptState state = current(username);
+        return state != null ? state.cycles() : 0;
+    }
+
+    private LoginAttemptState current(String username) {
+        return LoginAttemptState.current(store.get(username), System.currentTimeMillis(), MAX_BLOCK_CYCLES);
     }
-} 
\ No newline at end of file
+}
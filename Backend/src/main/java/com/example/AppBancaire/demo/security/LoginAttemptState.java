@@ -0,0 +1,32 @@
+package com.example.bank.demo.security;
+
+/**
+ * État des échecs de connexion d'un utilisateur.
+ * {@code blockedUntil} vaut 0 hors blocage ; un blocage est long dès que {@code cycles}
+ * atteint le nombre maximal de cycles. Les instances sont immuables : chaque échec produit
+ * un nouvel état, appliqué atomiquement par le {@link LoginAttemptStore}.
+ */
+public record LoginAttemptState(int attempts, int cycles, long blockedUntil, long attemptsExpireAt) {
+
+    /**
+     * État effectif à l'instant {@code now} : un blocage ou des tentatives expirés sont oubliés.
+     * Retourne null quand il ne reste rien à retenir.
+     */
+    public static LoginAttemptState current(LoginAttemptState state, long now, int maxBlockCycles) {
+        if (state == null) {
+            return null;
+        }
+        if (state.blockedUntil() != 0 && state.blockedUntil() <= now) {
+            // Fin d'un blocage long : tout est réinitialisé ; fin d'un blocage court : seuls les essais le sont
+            return state.cycles() >= maxBlockCycles ? null : new LoginAttemptState(0, state.cycles(), 0, 0);
+        }
+        if (state.blockedUntil() == 0 && state.attempts() > 0 && state.attemptsExpireAt() <= now) {
+            state = new LoginAttemptState(0, state.cycles(), 0, 0);
+        }
+        return state.attempts() == 0 && state.cycles() == 0 && state.blockedUntil() == 0 ? null : state;
+    }
+
+    public boolean isBlocked(long now) {
+        return blockedUntil > now;
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.bank.demo.security;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * Stockage des états de {@link LoginAttemptService}, choisi par bank.security.login-attempts.store :
+ * local (défaut, mémoire du nœud) ou jdbc (table partagée entre les nœuds).
+ */
+public interface LoginAttemptStore {
+
+    LoginAttemptState get(String username);
+
+    /**
+     * Remplace atomiquement l'état de l'utilisateur ; un résultat null supprime l'entrée.
+     */
+    LoginAttemptState compute(String username, UnaryOperator<LoginAttemptState> update);
+
+    void remove(String username);
+}
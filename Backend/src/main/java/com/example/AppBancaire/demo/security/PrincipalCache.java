@@ -0,0 +1,83 @@
+package com.example.bank.demo.security;
+
+import com.example.bank.demo.repository.UserRepository;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache borné des utilisateurs authentifiés par nom d'utilisateur (id, rôle, agence), avec leur
+ * hash de mot de passe (identifiants Basic) et la date du dernier changement d'identifiants
+ * (jetons de session), vérifiés sans requête.
+ * Les modifications passant par UserService l'invalident après leur commit ; les autres sont
+ * visibles au plus tard après bank.auth.principal-cache.ttl-seconds.
+ */
+@Component
+public class PrincipalCache {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CredentialCache credentialCache;
+
+    private record Cached(AuthenticatedUser principal, String passwordHash, long credentialsChangedAt) {
+    }
+
+    private final Cache<String, Cached> principals;
+
+    public PrincipalCache(@Value("${bank.auth.principal-cache.ttl-seconds:60}") long ttlSeconds,
+                          @Value("${bank.auth.principal-cache.max-size:10000}") long maxSize) {
+        this.principals = CacheBuilder.newBuilder()
+            .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+            .maximumSize(maxSize)
+            .build();
+    }
+
+    public Optional<AuthenticatedUser> get(String username) {
+        return load(username).map(Cached::principal);
+    }
+
+    /**
+     * Utilisateur d'un jeton de session émis à {@code issuedAt}, si ses identifiants n'ont pas
+     * changé depuis ; la révocation est ainsi vue par tous les nœuds.
+     */
+    public Optional<AuthenticatedUser> forToken(String username, long issuedAt) {
+        return load(username)
+            .filter(cached -> issuedAt >= cached.credentialsChangedAt())
+            .map(Cached::principal);
+    }
+
+    /**
+     * Utilisateur dont {@code rawPassword} correspond au mot de passe (identifiants Basic).
+     */
+    public Optional<AuthenticatedUser> authenticate(String username, String rawPassword) {
+        return load(username)
+            .filter(cached -> credentialCache.matches(username, rawPassword, cached.passwordHash()))
+            .map(Cached::principal);
+    }
+
+    public void evict(String username) {
+        if (username != null) {
+            principals.invalidate(username);
+        }
+    }
+
+    private Optional<Cached> load(String username) {
+        Cached cached = principals.getIfPresent(username);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        // Les utilisateurs inconnus ne sont pas mis en cache
+        Optional<Cached> loaded = userRepository.findByUsername(username)
+            .map(user -> new Cached(AuthenticatedUser.of(user), user.getPassword(),
+                user.getCredentialsChangedAt() != null ? user.getCredentialsChangedAt() : 0L));
+        loaded.ifPresent(entry -> principals.put(username, entry));
+        return loaded;
+    }
+}
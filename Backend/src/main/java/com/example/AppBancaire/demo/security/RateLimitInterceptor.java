@@ -0,0 +1,72 @@
+package com.example.bank.demo.security;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applique {@link RateLimiter} avant les endpoints de mouvement d'argent et répond 429
+ * avec l'en-tête Retry-After quand un seau est vide. L'utilisateur et son agence viennent
+ * de {@link RequestPrincipal} (adresse IP pour une requête anonyme), le compte de la variable
+ * {accountId} de l'URL quand elle existe ; pour les virements, le compte débité appartient
+ * à l'utilisateur et son seau suffit.
+ */
+@Component
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+    @Autowired
+    private RateLimiter rateLimiter;
+
+    @Autowired
+    private RequestPrincipal requestPrincipal;
+
+    @Value("${bank.ratelimit.enabled:true}")
+    private boolean enabled;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if (!enabled || "OPTIONS".equals(request.getMethod())) {
+            return true;
+        }
+        Optional<AuthenticatedUser> principal = requestPrincipal.current();
+        Map<String, String> keys = new LinkedHashMap<>();
+        keys.put(RateLimiter.USER, principal.map(AuthenticatedUser::username).orElse("ip:" + request.getRemoteAddr()));
+        keys.put(RateLimiter.ACCOUNT, pathVariable(request, "accountId"));
+        keys.put(RateLimiter.AGENCY, principal.map(AuthenticatedUser::agencyId).map(String::valueOf).orElse(null));
+
+        long waitNanos = rateLimiter.acquire(operation(request.getRequestURI()), keys);
+        if (waitNanos == 0) {
+            return true;
+        }
+        long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+        response.setStatus(429);
+        response.setHeader("Retry-After", String.valueOf(retryAfter));
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.getWriter().write("{\"error\":\"Trop de requêtes, réessayez dans " + retryAfter + " s\","
+            + "\"retryAfter\":" + retryAfter + "}");
+        return false;
+    }
+
+    private static String operation(String uri) {
+        if (uri.startsWith("/api/cashier/")) {
+            return "cash";
+        }
+        return uri.endsWith("/pay-bill") ? "bill" : "transfer";
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String pathVariable(HttpServletRequest request, String name) {
+        Object variables = request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        return variables instanceof Map ? ((Map<String, String>) variables).get(name) : null;
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.bank.demo.security;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limitation de débit des opérations qui déplacent de l'argent, par utilisateur, par compte
+ * et par agence. Les règles sont lues dans bank.ratelimit.rules.&lt;opération&gt; sous la forme
+ * "dimension=jetons_par_seconde:rafale,..." ; une dimension absente n'est pas limitée.
+ * Une requête doit obtenir un jeton de chacun de ses seaux, du plus précis au plus large ;
+ * en cas de refus, les jetons déjà pris lui sont rendus.
+ */
+@Component
+public class RateLimiter {
+    public static final String USER = "user";
+    public static final String ACCOUNT = "account";
+    public static final String AGENCY = "agency";
+
+    private record Limit(double ratePerSecond, int burst) {
+    }
+
+    private final Map<String, Map<String, Limit>> rules = new LinkedHashMap<>();
+    private final Cache<String, TokenBucket> buckets;
+    private final MeterRegistry meterRegistry;
+
+    public RateLimiter(@Value("${bank.ratelimit.rules.transfer:user=2:10,agency=50:200}") String transferRule,
+                       @Value("${bank.ratelimit.rules.bill:user=2:10,agency=50:200}") String billRule,
+                       @Value("${bank.ratelimit.rules.cash:user=5:20,account=2:5,agency=50:200}") String cashRule,
+                       @Value("${bank.ratelimit.max-buckets:100000}") long maxBuckets,
+                       MeterRegistry meterRegistry) {
+        rules.put("transfer", parse(transferRule));
+        rules.put("bill", parse(billRule));
+        rules.put("cash", parse(cashRule));
+        this.buckets = CacheBuilder.newBuilder()
+            .maximumSize(maxBuckets)
+            .expireAfterAccess(10, TimeUnit.MINUTES)
+            .build();
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("bank.ratelimit.buckets", buckets, Cache::size)
+            .description("Seaux de limitation de débit actifs")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Prend un jeton pour l'opération et les clés données (dimension → valeur, valeurs null ignorées).
+     * Retourne 0 si la requête passe, sinon l'attente en nanosecondes avant de réessayer.
+     */
+    public long acquire(String operation, Map<String, String> keys) {
+        Map<String, Limit> limits = rules.getOrDefault(operation, Map.of());
+        List<TokenBucket> taken = new ArrayList<>();
+        long now = System.nanoTime();
+        for (Map.Entry<String, String> key : keys.entrySet()) {
+            Limit limit = limits.get(key.getKey());
+            if (limit == null || key.getValue() == null) {
+                continue;
+            }
+            TokenBucket bucket = bucket(operation + "|" + key.getKey() + "|" + key.getValue(), limit);
+            long wait = bucket.tryAcquire(now);
+            if (wait > 0) {
+                taken.forEach(TokenBucket::refund);
+                meterRegistry.counter("bank.ratelimit.rejected", "operation", operation, "dimension", key.getKey())
+                    .increment();
+                return wait;
+            }
+            taken.add(bucket);
+        }
+        meterRegistry.counter("bank.ratelimit.allowed", "operation", operation).increment();
+        return 0;
+    }
+
+    private TokenBucket bucket(String key, Limit limit) {
+        try {
+            return buckets.get(key, () -> new TokenBucket(limit.ratePerSecond(), limit.burst()));
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private static Map<String, Limit> parse(String rule) {
+        Map<String, Limit> limits = new LinkedHashMap<>();
+        for (String part : rule.split(",")) {
+            if (part.isBlank()) {
+                continue;
+            }
+            String[] dimension = part.trim().split("=", 2);
+            String[] values = dimension[1].split(":", 2);
+            limits.put(dimension[0].trim(), new Limit(Double.parseDouble(values[0].trim()),
+                values.length > 1 ? Integer.parseInt(values[1].trim()) : 1));
+        }
+        return limits;
+    }
+}
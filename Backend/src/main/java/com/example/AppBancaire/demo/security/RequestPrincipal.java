@@ -0,0 +1,27 @@
+package com.example.bank.demo.security;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.Optional;
+
+/**
+ * Accès à l'utilisateur de la requête en cours, résolu par {@link RequestPrincipalFilter}.
+ */
+@Component
+public class RequestPrincipal {
+    static final String ATTRIBUTE = RequestPrincipal.class.getName();
+
+    public Optional<AuthenticatedUser> current() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable((AuthenticatedUser) attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST));
+    }
+
+    public AuthenticatedUser get() {
+        return current().orElseThrow(() -> new RuntimeException("Utilisateur non authentifié"));
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.bank.demo.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Optional;
+
+/**
+ * Résout une seule fois par requête l'utilisateur de l'en-tête Authorization et le dépose
+ * dans la requête, où {@link RequestPrincipal} le retrouve : jeton Bearer vérifié, ou
+ * identifiants Basic dont le mot de passe est vérifié. Une requête sans en-tête ou
+ * avec un en-tête invalide continue sans utilisateur : chaque endpoint décide de la réponse.
+ * La connexion vérifie elle-même ses identifiants et n'est pas filtrée.
+ */
+@Component
+public class RequestPrincipalFilter extends OncePerRequestFilter {
+
+    @Autowired
+    private SessionTokenService sessionTokenService;
+
+    @Autowired
+    private PrincipalCache principalCache;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String authHeader = request.getHeader("Authorization");
+        if (authHeader != null && !authHeader.isBlank()) {
+            try {
+                resolve(authHeader)
+                    .ifPresent(principal -> request.setAttribute(RequestPrincipal.ATTRIBUTE, principal));
+            } catch (RuntimeException e) {
+                // En-tête illisible ou jeton expiré : requête anonyme
+            }
+        }
+        chain.doFilter(request, response);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getRequestURI().endsWith("/api/auth/login");
+    }
+
+    private Optional<AuthenticatedUser> resolve(String authHeader) {
+        if (!authHeader.startsWith("Basic ")) {
+            return sessionTokenService.resolvePrincipal(authHeader);
+        }
+        String credentials = new String(Base64.getDecoder().decode(authHeader.substring("Basic ".length()).trim()),
+            StandardCharsets.UTF_8);
+        String[] values = credentials.split(":", 2);
+        if (values.length < 2) {
+            return Optional.empty();
+        }
+        return principalCache.authenticate(values[0], values[1]);
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.bank.demo.security;
+
+import com.example.bank.demo.model.User;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jetons de session signés délivrés à la connexion, présentés ensuite en "Authorization: Bearer".
+ * Le jeton porte le nom d'utilisateur, le rôle et ses dates d'émission et d'expiration,
+ * signés en HMAC-SHA256 avec bank.auth.token.secret : sa vérification ne touche ni la base ni BCrypt.
+ * Sans secret configuré, une clé aléatoire est tirée au démarrage et les jetons ne survivent
+ * pas à un redémarrage. Un jeton émis avant le dernier changement d'identifiants de l'utilisateur
+ * (colonne users.credentials_changed_at, lue via {@link PrincipalCache}) est refusé sur tous les
+ * nœuds ; {@link #revoke} le refuse en plus immédiatement sur cette instance, le temps que le cache
+ * des autres soit rafraîchi. Les révocations locales sont oubliées après la durée de vie d'un jeton.
+ */
+@Service
+public class SessionTokenService {
+    private static final Logger logger = LoggerFactory.getLogger(SessionTokenService.class);
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    /**
+     * Contenu d'un jeton valide.
+     */
+    public record SessionToken(String username, String role, long issuedAt, long expiresAt) {
+    }
+
+    @Autowired
+    private PrincipalCache principalCache;
+
+    private final SecretKeySpec key;
+    private final long ttlMillis;
+    private final Cache<String, Long> revokedBefore;
+
+    public SessionTokenService(@Value("${bank.auth.token.secret:}") String secret,
+                               @Value("${bank.auth.token.ttl-minutes:60}") long ttlMinutes) {
+        byte[] keyBytes;
+        if (secret.isBlank()) {
+            logger.warn("bank.auth.token.secret absent : clé de session aléatoire, jetons perdus au redémarrage");
+            keyBytes = new byte[32];
+            new SecureRandom().nextBytes(keyBytes);
+        } else {
+            keyBytes = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        this.key = new SecretKeySpec(keyBytes, HMAC_ALGORITHM);
+        this.ttlMillis = TimeUnit.MINUTES.toMillis(ttlMinutes);
+        // Au-delà, tous les jetons émis avant la révocation ont expiré d'eux-mêmes
+        this.revokedBefore = CacheBuilder.newBuilder()
+            .expireAfterWrite(ttlMillis, TimeUnit.MILLISECONDS)
+            .build();
+    }
+
+    public String issue(User user) {
+        long now = System.currentTimeMillis();
+        String payload = now + "|" + (now + ttlMillis) + "|" + user.getRole() + "|" + user.getUsername();
+        String encoded = Base64.getUrlEncoder().withoutPadding().encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+        return encoded + "." + sign(encoded);
+    }
+
+    public Optional<SessionToken> verify(String token) {
+        int dot = token.indexOf('.');
+        if (dot <= 0) {
+            return Optional.empty();
+        }
+        String encoded = token.substring(0, dot);
+        byte[] expected = sign(encoded).getBytes(StandardCharsets.US_ASCII);
+        if (!MessageDigest.isEqual(expected, token.substring(dot + 1).getBytes(StandardCharsets.US_ASCII))) {
+            return Optional.empty();
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8).split("\\|", 4);
+            SessionToken session = new SessionToken(parts[3], parts[2], Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+            if (session.expiresAt() <= System.currentTimeMillis()
+                    || session.issuedAt() < revokedBefore.asMap().getOrDefault(session.username(), Long.MIN_VALUE)) {
+                return Optional.empty();
+            }
+            return Optional.of(session);
+        } catch (RuntimeException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Utilisateur d'un en-tête "Authorization: Bearer" dont le jeton est valide et postérieur
+     * au dernier changement d'identifiants ; vide sinon.
+     */
+    public Optional<AuthenticatedUser> resolvePrincipal(String authHeader) {
+        if (!authHeader.startsWith("Bearer ")) {
+            return Optional.empty();
+        }
+        return verify(authHeader.substring("Bearer ".length()).trim())
+            .flatMap(session -> principalCache.forToken(session.username(), session.issuedAt()));
+    }
+
+    /**
+     * Nom d'utilisateur d'un jeton Bearer valide. Les identifiants Basic sont vérifiés par
+     * RequestPrincipalFilter : un en-tête Basic qui arrive ici a été refusé.
+     */
+    public String resolveUsername(String authHeader) {
+        if (authHeader.startsWith("Bearer ")) {
+            return resolvePrincipal(authHeader)
+                .map(AuthenticatedUser::username)
+                .orElseThrow(() -> new RuntimeException("Jeton de session invalide ou expiré"));
+        }
+        throw new RuntimeException("Identifiants invalides");
+    }
+
+    /**
+     * Refuse immédiatement, sur cette instance, les jetons déjà émis pour {@code username} ;
+     * la révocation durable est users.credentials_changed_at.
+     */
+    public void revoke(String username) {
+        revokedBefore.put(username, System.currentTimeMillis());
+    }
+
+    public long getTtlSeconds() {
+        return TimeUnit.MILLISECONDS.toSeconds(ttlMillis);
+    }
+
+    private String sign(String encodedPayload) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(key);
+            return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(mac.doFinal(encodedPayload.getBytes(StandardCharsets.US_ASCII)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.bank.demo.security;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Seau à jetons sans verrou : {@code ratePerSecond} jetons par seconde, {@code burst} au plus.
+ * L'état tient dans un seul long, l'instant théorique d'arrivée de la prochaine requête
+ * (forme GCRA du seau à jetons), mis à jour par compareAndSet.
+ */
+final class TokenBucket {
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final AtomicLong theoreticalArrival;
+
+    TokenBucket(double ratePerSecond, int burst) {
+        this.intervalNanos = Math.max(1L, (long) (1_000_000_000L / ratePerSecond));
+        this.toleranceNanos = intervalNanos * Math.max(0, burst - 1);
+        this.theoreticalArrival = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Prend un jeton ; retourne 0 en cas de succès, sinon l'attente en nanosecondes avant le prochain jeton.
+     */
+    long tryAcquire(long now) {
+        while (true) {
+            long arrival = theoreticalArrival.get();
+            long base = Math.max(arrival, now);
+            long wait = base - toleranceNanos - now;
+            if (wait > 0) {
+                return wait;
+            }
+            if (theoreticalArrival.compareAndSet(arrival, base + intervalNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    // Rend un jeton pris pour une requête finalement refusée par un autre seau
+    void refund() {
+        theoreticalArrival.addAndGet(-intervalNanos);
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.bank.demo.service;
 
 import com.example.bank.demo.model.Account;
+import com.example.bank.demo.model.AccountView;
 import com.example.bank.demo.model.Transaction;
 import com.example.bank.demo.model.User;
 import com.example.bank.demo.repository.AccountRepository;
@@ -19,6 +20,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
 import java.util.stream.Collectors;
 import java.util.Comparator;
 import java.util.TreeMap;
@@ -48,6 +50,9 @@ public class AccountService {
     @Autowired
     private BankCardRepository bankCardRepository;
 
+    @Autowired
+    private BalanceLedgerService balanceLedgerService;
+
     @Transactional(readOnly = true)
     public List<Account> getAccountsByUsername(String username) {
         User user = userRepository.findByUsername(username)
@@ -70,7 +75,6 @@ public class AccountService {
         return accountRepository.save(account);
     }
 
-    @Transactional
     public void transferMoney(Long fromAccountId, String toAccountNumber, Double amount, String password, String beneficiaryName) {
         try {
             Account fromAccount = accountRepository.findById(fromAccountId)
@@ -84,20 +88,9 @@ public class AccountService {
                 throw new RuntimeException("Invalid password");
             }
 
-            // Vérifier le solde
-            if (fromAccount.getBalance() < amount) {
-                throw new RuntimeException("Solde insuffisant");
-            }
-
-            // Effectuer le transfert immédiat uniquement pour les virements non programmés
-            fromAccount.setBalance(fromAccount.getBalance() - amount);
-            toAccount.setBalance(toAccount.getBalance() + amount);
-            
-            accountRepository.save(fromAccount);
-            accountRepository.save(toAccount);
-
-            // Créer les transactions
-            createTransactionPair(fromAccount, toAccount, amount);
+            // Débit, crédit et transactions dans une même transaction
+            balanceLedgerService.transfer(fromAccount, toAccount, amount,
+                () -> createTransactionPair(fromAccount, toAccount, amount));
 
         } catch (Exception e) {
             logger.error("Error during transfer", e);
@@ -106,43 +99,39 @@ public class AccountService {
     }
 
     // Cette méthode sera utilisée uniquement pour les virements programmés
-    @Transactional
     public void executeScheduledTransfer(Account fromAccount, Account toAccount, Double amount, Date executionDate) {
-        // Vérifier le solde au moment de l'exécution
-        if (fromAccount.getBalance() < amount) {
-            throw new RuntimeException("Solde insuffisant");
-        }
-
-        // Effectuer le transfert
-        fromAccount.setBalance(fromAccount.getBalance() - amount);
-        toAccount.setBalance(toAccount.getBalance() + amount);
-        
-        accountRepository.save(fromAccount);
-        accountRepository.save(toAccount);
-
-        // Créer les transactions avec la date d'exécution programmée
-        Transaction debitTransaction = new Transaction();
-        debitTransaction.setAccount(fromAccount);
-        debitTransaction.setAmount(amount);
-        debitTransaction.setType("DEBIT");
-        debitTransaction.setDescription("Virement programmé vers " + toAccount.getAccountNumber());
-        debitTransaction.setFromAccount(fromAccount.getAccountNumber());
-        debitTransaction.setToAccount(toAccount.getAccountNumber());
-        debitTransaction.setDate(executionDate);
-        transactionService.createTransaction(debitTransaction);
-
-        Transaction creditTransaction = new Transaction();
-        creditTransaction.setAccount(toAccount);
-        creditTransaction.setAmount(amount);
-        creditTransaction.setType("CREDIT");
-        creditTransaction.setDescription("Virement programmé depuis " + fromAccount.getAccountNumber());
-        creditTransaction.setFromAccount(fromAccount.getAccountNumber());
-        creditTransaction.setToAccount(toAccount.getAccountNumber());
-        creditTransaction.setDate(executionDate);
-        transactionService.createTransaction(creditTransaction);
+        balanceLedgerService.transfer(fromAccount, toAccount, amount, () -> {
+            // Créer les transactions avec la date d'exécution programmée
+            String transferId = UUID.randomUUID().toString();
+            Transaction debitTransaction = new Transaction();
+            debitTransaction.setAccount(fromAccount);
+            debitTransaction.setAmount(amount);
+            debitTransaction.setType("DEBIT");
+            debitTransaction.setDescription("Virement programmé vers " + toAccount.getAccountNumber());
+            debitTransaction.setFromAccount(fromAccount.getAccountNumber());
+            debitTransaction.setToAccount(toAccount.getAccountNumber());
+            debitTransaction.setDate(executionDate);
+            debitTransaction.setTransferId(transferId);
+            transactionService.createTransaction(debitTransaction);
+
+            Transaction creditTransaction = new Transaction();
+            creditTransaction.setAccount(toAccount);
+            creditTransaction.setAmount(amount);
+            creditTransaction.setType("CREDIT");
+            creditTransaction.setDescription("Virement programmé depuis " + fromAccount.getAccountNumber());
+            creditTransaction.setFromAccount(fromAccount.getAccountNumber());
+            creditTransaction.setToAccount(toAccount.getAccountNumber());
+            creditTransaction.setDate(executionDate);
+            creditTransaction.setTransferId(transferId);
+            transactionService.createTransaction(creditTransaction);
+        });
     }
 
     private void createTransactionPair(Account fromAccount, Account toAccount, Double amount) {
+        // Les deux jambes partagent le même identifiant et la même date
+        String transferId = UUID.randomUUID().toString();
+        Date now = new Date();
+
         // Transaction de débit
         Transaction debitTransaction = new Transaction();
         debitTransaction.setAccount(fromAccount);
@@ -151,7 +140,8 @@ public class AccountService {
         debitTransaction.setDescription("Virement vers " + toAccount.getAccountNumber());
         debitTransaction.setFromAccount(fromAccount.getAccountNumber());
         debitTransaction.setToAccount(toAccount.getAccountNumber());
-        debitTransaction.setDate(new Date());
+        debitTransaction.setDate(now);
+        debitTransaction.setTransferId(transferId);
         transactionService.createTransaction(debitTransaction);
 
         // Transaction de crédit
@@ -162,19 +152,20 @@ public class AccountService {
         creditTransaction.setDescription("Virement depuis " + fromAccount.getAccountNumber());
         creditTransaction.setFromAccount(fromAccount.getAccountNumber());
         creditTransaction.setToAccount(toAccount.getAccountNumber());
-        creditTransaction.setDate(new Date());
+        creditTransaction.setDate(now);
+        creditTransaction.setTransferId(transferId);
         transactionService.createTransaction(creditTransaction);
     }
 
     public Account updateBalance(Long accountId, Double newBalance) {
         Account account = accountRepository.findById(accountId)
             .orElseThrow(() -> new RuntimeException("Account not found"));
-        account.setBalance(newBalance);
-        return accountRepository.save(account);
+        balanceLedgerService.overwrite(account, newBalance);
+        return account;
     }
 
-    public List<Account> getAllAccounts() {
-        return accountRepository.findAll();
+    public long countAccounts() {
+        return accountRepository.count();
     }
 
     public Optional<Account> getAccountById(Long id) {
@@ -208,6 +199,7 @@ public class AccountService {
         return statistics;
     }
 
+    @Transactional(readOnly = true)
     public Map<String, Object> getExpenseStatistics(String username) {
         User user = userRepository.findByUsername(username)
             .orElseThrow(() -> new RuntimeException("User not found"));
@@ -229,6 +221,7 @@ public class AccountService {
         return result;
     }
 
+    @Transactional(readOnly = true)
     public Map<String, Object> getBalanceHistory(String username) {
         User user = userRepository.findByUsername(username)
             .orElseThrow(() -> new RuntimeException("User not found"));
@@ -289,6 +282,10 @@ public class AccountService {
 
     @Transactional
     public void createTransactionPair(Account fromAccount, Account toAccount, Double amount, String description) {
+        // Les deux jambes partagent le même identifiant et la même date
+        String transferId = UUID.randomUUID().toString();
+        Date now = new Date();
+
         // Transaction de débit
         Transaction debitTransaction = new Transaction();
         debitTransaction.setAccount(fromAccount);
@@ -297,7 +294,8 @@ public class AccountService {
         debitTransaction.setDescription(description + " vers " + toAccount.getAccountNumber());
         debitTransaction.setFromAccount(fromAccount.getAccountNumber());
         debitTransaction.setToAccount(toAccount.getAccountNumber());
-        debitTransaction.setDate(new Date());
+        debitTransaction.setDate(now);
+        debitTransaction.setTransferId(transferId);
         transactionService.createTransaction(debitTransaction);
 
         // Transaction de crédit
@@ -308,7 +306,8 @@ public class AccountService {
         creditTransaction.setDescription(description + " depuis " + fromAccount.getAccountNumber());
         creditTransaction.setFromAccount(fromAccount.getAccountNumber());
         creditTransaction.setToAccount(toAccount.getAccountNumber());
-        creditTransaction.setDate(new Date());
+        creditTransaction.setDate(now);
+        creditTransaction.setTransferId(transferId);
         transactionService.createTransaction(creditTransaction);
     }
 
@@ -318,16 +317,9 @@ public class AccountService {
     }
 
     @Transactional(readOnly = true)
-    public List<Account> getActiveAccounts() {
-        List<Account> accounts = accountRepository.findAll();
-        logger.info("Nombre total de comptes trouvés: {}", accounts.size());
-        
-        List<Account> activeAccounts = accounts.stream()
-            .filter(account -> !"CLOSED".equals(account.getStatus()))
-            .collect(Collectors.toList());
-        
+    public List<AccountView> getActiveAccounts() {
+        List<AccountView> activeAccounts = accountRepository.findActiveAccounts();
         logger.info("Nombre de comptes actifs: {}", activeAccounts.size());
-        
         return activeAccounts;
     }
 
@@ -353,6 +345,7 @@ public class AccountService {
 
         // Supprimer le compte
         accountRepository.deleteById(accountId);
+        balanceLedgerService.evict(accountId);
 
         // Vérifier si l'utilisateur a d'autres comptes
         List<Account> remainingAccounts = accountRepository.findByUserId(user.getId());
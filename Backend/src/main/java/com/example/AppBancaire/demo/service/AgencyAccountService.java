@@ -0,0 +1,76 @@
+package com.example.bank.demo.service;
+
+import com.example.bank.demo.model.AccountView;
+import com.example.bank.demo.model.AgencyAccountView;
+import com.example.bank.demo.repository.AccountRepository;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Comptes actifs d'une agence, toujours filtrés par agence en base.
+ * Le nombre total de comptes par agence est mis en cache quelques secondes :
+ * il sert à l'affichage et peut être légèrement en retard sur les ouvertures et clôtures.
+ */
+@Service
+@Transactional(readOnly = true)
+public class AgencyAccountService {
+    private static final int MAX_PAGE_SIZE = 500;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    private final Cache<Long, Long> accountCounts;
+
+    public AgencyAccountService(@Value("${bank.agency.account-count.ttl-seconds:30}") long countTtlSeconds) {
+        this.accountCounts = CacheBuilder.newBuilder()
+            .expireAfterWrite(countTtlSeconds, TimeUnit.SECONDS)
+            .maximumSize(10_000)
+            .build();
+    }
+
+    public List<AccountView> getActiveAccounts(Long agencyId) {
+        return accountRepository.findActiveAccountsByAgencyId(agencyId);
+    }
+
+    /**
+     * Page des comptes actifs de l'agence par id croissant.
+     * {@code afterId} est le nextCursor de la page précédente, ou null pour la première page.
+     */
+    public Map<String, Object> getActiveAccountPage(Long agencyId, Long afterId, int limit) {
+        Slice<AgencyAccountView> slice = accountRepository.findActiveAccountViewsByAgencyId(
+            agencyId, afterId != null ? afterId : 0L, PageRequest.of(0, Math.max(1, Math.min(limit, MAX_PAGE_SIZE))));
+
+        Map<String, Object> page = new HashMap<>();
+        page.put("accounts", slice.getContent());
+        page.put("hasMore", slice.hasNext());
+        page.put("nextCursor", slice.hasNext() ? slice.getContent().get(slice.getNumberOfElements() - 1).id() : null);
+        page.put("total", countActiveAccounts(agencyId));
+        return page;
+    }
+
+    public long countActiveAccounts(Long agencyId) {
+        try {
+            return accountCounts.get(agencyId, () -> accountRepository.countActiveAccountsByAgencyId(agencyId));
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    public void invalidateCount(Long agencyId) {
+        if (agencyId != null) {
+            accountCounts.invalidate(agencyId);
+        }
+    }
+}
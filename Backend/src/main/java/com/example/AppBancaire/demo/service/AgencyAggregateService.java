@@ -0,0 +1,189 @@
+package com.example.bank.demo.service;
+
+import com.example.bank.demo.model.Account;
+import com.example.bank.demo.model.AgencyDailyAggregate;
+import com.example.bank.demo.model.Transaction;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Tenue incrémentale de {@link AgencyDailyAggregate} : chaque transaction écrite
+ * incrémente le compteur (agence, jour, type) après le commit de l'opération bancaire,
+ * dans sa propre transaction. Un verrou mortel ou une attente trop longue sur l'agrégat
+ * ne peut donc pas annuler ni amputer le mouvement d'argent ; une mise à jour ratée est
+ * comptée et journalisée, et {@link #rebuild()} recalcule alors les agrégats depuis l'historique.
+ * Les jours sont comptés en UTC ({@link AgencyDailyAggregate#ZONE}), comme DATE() sur la
+ * connexion MySQL (serverTimezone=UTC) lors de la reconstruction.
+ */
+@Service
+public class AgencyAggregateService {
+    private static final Logger logger = LoggerFactory.getLogger(AgencyAggregateService.class);
+
+    private static final String UPSERT_SQL =
+        "INSERT INTO agency_daily_aggregate (agency_id, stat_day, type, slot, tx_count, total_amount) " +
+        "VALUES (?, ?, ?, ?, ?, ?) " +
+        "ON DUPLICATE KEY UPDATE tx_count = tx_count + VALUES(tx_count), " +
+        "total_amount = total_amount + VALUES(total_amount)";
+
+    private static final String REBUILD_SELECT =
+        "INSERT INTO agency_daily_aggregate (agency_id, stat_day, type, slot, tx_count, total_amount) " +
+        "SELECT ?, DATE(t.date), t.type, 0, COUNT(*), COALESCE(SUM(t.amount), 0) " +
+        "FROM transaction t JOIN account a ON a.id = t.account_id JOIN users u ON u.id = a.user_id ";
+
+    // Une mise à jour incrémentale arrivée entre le DELETE et l'INSERT de la reconstruction s'y ajoute
+    private static final String REBUILD_UPSERT =
+        " ON DUPLICATE KEY UPDATE tx_count = tx_count + VALUES(tx_count), " +
+        "total_amount = total_amount + VALUES(total_amount)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${bank.stats.aggregate.slots:8}")
+    private int slots;
+
+    @Value("${bank.stats.rebuild.parallelism:4}")
+    private int rebuildParallelism;
+
+    private final Counter failures;
+    private TransactionTemplate separateTransaction;
+
+    public AgencyAggregateService(MeterRegistry meterRegistry) {
+        this.failures = Counter.builder("bank.stats.aggregate.failures")
+            .description("Mises à jour d'agrégats d'agence perdues (à corriger par une reconstruction)")
+            .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        separateTransaction = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        separateTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public void record(Transaction transaction) {
+        recordAll(List.of(transaction));
+    }
+
+    public void recordAll(Collection<Transaction> transactions) {
+        // Regrouper par (agence, jour, type) pour n'écrire qu'une ligne par clé
+        Map<List<Object>, double[]> deltas = new LinkedHashMap<>();
+        for (Transaction transaction : transactions) {
+            if (transaction.getType() == null || transaction.getDate() == null) {
+                continue;
+            }
+            List<Object> key = List.of(
+                agencyIdOf(transaction.getAccount()),
+                transaction.getDate().toInstant().atZone(AgencyDailyAggregate.ZONE).toLocalDate(),
+                transaction.getType()
+            );
+            double[] delta = deltas.computeIfAbsent(key, k -> new double[2]);
+            delta[0] += 1;
+            delta[1] += transaction.getAmount() != null ? transaction.getAmount() : 0.0;
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        int slot = ThreadLocalRandom.current().nextInt(Math.max(1, slots));
+        List<Object[]> rows = new ArrayList<>(deltas.size());
+        deltas.forEach((key, delta) -> rows.add(new Object[] {
+            key.get(0), Date.valueOf((LocalDate) key.get(1)), key.get(2), slot, (long) delta[0], delta[1]
+        }));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(rows);
+                }
+            });
+        } else {
+            apply(rows);
+        }
+    }
+
+    private void apply(List<Object[]> rows) {
+        try {
+            separateTransaction.executeWithoutResult(status -> jdbcTemplate.batchUpdate(UPSERT_SQL, rows));
+        } catch (Exception e) {
+            failures.increment(rows.size());
+            logger.error("Mise à jour des agrégats d'agence impossible ({} clés)", rows.size(), e);
+        }
+    }
+
+    /**
+     * Recalcule tous les agrégats depuis la table transaction, une agence par tâche,
+     * chaque agence dans sa propre transaction. À lancer hors des heures de forte activité :
+     * les transactions d'une agence écrites pendant sa reconstruction peuvent être comptées deux fois.
+     */
+    public Map<String, Object> rebuild() {
+        long start = System.currentTimeMillis();
+        List<Long> agencyIds = new ArrayList<>(jdbcTemplate.queryForList("SELECT id FROM agencies", Long.class));
+        agencyIds.add(AgencyDailyAggregate.NO_AGENCY);
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, rebuildParallelism));
+        try {
+            Map<Long, CompletableFuture<Integer>> tasks = new HashMap<>();
+            for (Long agencyId : agencyIds) {
+                tasks.put(agencyId, CompletableFuture.supplyAsync(() -> rebuildAgency(agencyId), executor));
+            }
+            CompletableFuture.allOf(tasks.values().toArray(new CompletableFuture[0])).join();
+
+            int rows = tasks.values().stream().mapToInt(CompletableFuture::join).sum();
+            long duration = System.currentTimeMillis() - start;
+            logger.info("Agrégats d'agence reconstruits : {} agences, {} lignes en {} ms", agencyIds.size(), rows, duration);
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("agencies", agencyIds.size());
+            result.put("rows", rows);
+            result.put("durationMs", duration);
+            return result;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private int rebuildAgency(Long agencyId) {
+        return transactionTemplate.execute(status -> {
+            jdbcTemplate.update("DELETE FROM agency_daily_aggregate WHERE agency_id = ?", agencyId);
+            if (agencyId == AgencyDailyAggregate.NO_AGENCY) {
+                return jdbcTemplate.update(REBUILD_SELECT +
+                    "WHERE u.agency_id IS NULL GROUP BY DATE(t.date), t.type" + REBUILD_UPSERT, agencyId);
+            }
+            return jdbcTemplate.update(REBUILD_SELECT +
+                "WHERE u.agency_id = ? GROUP BY DATE(t.date), t.type" + REBUILD_UPSERT, agencyId, agencyId);
+        });
+    }
+
+    private static Long agencyIdOf(Account account) {
+        if (account == null || account.getUser() == null || account.getUser().getAgency() == null) {
+            return AgencyDailyAggregate.NO_AGENCY;
+        }
+        return account.getUser().getAgency().getId();
+    }
+}
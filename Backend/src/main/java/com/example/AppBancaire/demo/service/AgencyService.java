@@ -84,15 +84,15 @@ public class AgencyService {
             .orElseThrow(() -> new RuntimeException("Agence non trouvée pour ce directeur"));
     }
 
+    @Transactional(readOnly = true)
     public Map<String, Object> getAgencyStatistics(Long agencyId) {
         Map<String, Object> stats = new HashMap<>();
         
         // Récupérer les statistiques de l'agence
         List<User> cashiers = userService.getCashiersByAgencyId(agencyId);
-        List<User> clients = userService.getClients(); // Filtrer par agence si nécessaire
         
         stats.put("totalCashiers", cashiers.size());
-        stats.put("totalClients", clients.size());
+        stats.put("totalClients", userService.countClients()); // Filtrer par agence si nécessaire
         // Ajouter d'autres statistiques selon vos besoins
         
         return stats;
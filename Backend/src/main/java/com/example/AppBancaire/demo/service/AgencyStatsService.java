@@ -1,52 +1,86 @@
 package com.example.bank.demo.service;
 
-import com.example.bank.demo.model.Transaction;
+import com.example.bank.demo.model.AgencyDailyAggregate;
+import com.example.bank.demo.repository.AccountRepository;
+import com.example.bank.demo.repository.AgencyDailyAggregateRepository;
+import com.example.bank.demo.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.List;
-import java.time.LocalDateTime;
 import java.time.LocalDate;
 
+/**
+ * Statistiques des tableaux de bord, lues dans les agrégats journaliers
+ * (voir {@link AgencyAggregateService}) plutôt que dans la table transaction.
+ */
 @Service
+@Transactional(readOnly = true)
 public class AgencyStatsService {
 
     @Autowired
-    private AccountService accountService;
+    private AccountRepository accountRepository;
 
     @Autowired
-    private TransactionService transactionService;
+    private UserRepository userRepository;
 
     @Autowired
-    private UserService userService;
+    private AgencyDailyAggregateRepository aggregateRepository;
 
     public Map<String, Object> getAgencyStats() {
         Map<String, Object> stats = new HashMap<>();
-        
+
         // Statistiques générales
-        stats.put("totalAccounts", accountService.getAllAccounts().size());
-        stats.put("totalClients", userService.getClients().size());
-        stats.put("totalStaff", userService.getStaffMembers().size());
-        
+        stats.put("totalAccounts", accountRepository.count());
+        stats.put("totalClients", userRepository.countByRole("ROLE_USER"));
+        stats.put("totalStaff", userRepository.countByRole("ROLE_CASHIER"));
+
         // Statistiques des transactions
-        LocalDateTime startOfMonth = LocalDate.now().atStartOfDay();
-        List<Transaction> monthlyTransactions = transactionService.getTransactionsAfterDate(startOfMonth);
-        
-        double totalDeposits = monthlyTransactions.stream()
-            .filter(t -> t.getType().equals("DEPOSIT"))
-            .mapToDouble(Transaction::getAmount)
-            .sum();
-            
-        double totalWithdrawals = monthlyTransactions.stream()
-            .filter(t -> t.getType().equals("WITHDRAW"))
-            .mapToDouble(Transaction::getAmount)
-            .sum();
-            
-        stats.put("monthlyDeposits", totalDeposits);
-        stats.put("monthlyWithdrawals", totalWithdrawals);
-        stats.put("monthlyTransactionCount", monthlyTransactions.size());
+        LocalDate today = LocalDate.now(AgencyDailyAggregate.ZONE);
+        Map<String, double[]> byType = toTypeMap(aggregateRepository.sumByType(today, today));
+
+        stats.put("monthlyDeposits", sum(byType, "DEPOSIT"));
+        stats.put("monthlyWithdrawals", sum(byType, "WITHDRAW"));
+        stats.put("monthlyTransactionCount", count(byType));
 
         return stats;
     }
-} 
\ No newline at end of file
+
+    public Map<String, Object> getAgencyStatistics(Long agencyId) {
+        LocalDate today = LocalDate.now(AgencyDailyAggregate.ZONE);
+        Map<String, double[]> monthly = toTypeMap(
+            aggregateRepository.sumByTypeForAgency(agencyId, today.withDayOfMonth(1), today));
+
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("totalClients", userRepository.countByRoleAndAgency_Id("ROLE_USER", agencyId));
+        statistics.put("totalCashiers", userRepository.countByRoleAndAgency_Id("ROLE_CASHIER", agencyId));
+        statistics.put("totalTransactions", aggregateRepository.countAllForAgency(agencyId));
+        statistics.put("monthlyTransactionCount", count(monthly));
+        statistics.put("monthlyDeposits", sum(monthly, "DEPOSIT"));
+        statistics.put("monthlyWithdrawals", sum(monthly, "WITHDRAW"));
+        return statistics;
+    }
+
+    // type -> [nombre, montant]
+    private static Map<String, double[]> toTypeMap(List<Object[]> rows) {
+        Map<String, double[]> byType = new HashMap<>();
+        for (Object[] row : rows) {
+            byType.put((String) row[0], new double[] {
+                ((Number) row[1]).doubleValue(),
+                row[2] != null ? ((Number) row[2]).doubleValue() : 0.0
+            });
+        }
+        return byType;
+    }
+
+    private static double sum(Map<String, double[]> byType, String type) {
+        double[] values = byType.get(type);
+        return values != null ? values[1] : 0.0;
+    }
+
+    private static long count(Map<String, double[]> byType) {
+        return byType.values().stream().mapToLong(values -> (long) values[0]).sum();
+    }
+}
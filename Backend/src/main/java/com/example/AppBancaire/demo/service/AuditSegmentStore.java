@@ -0,0 +1,383 @@
+package com.example.bank.demo.service;
+
+import com.example.bank.demo.model.CashierLogView;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongPredicate;
+import java.util.stream.Stream;
+
+/**
+ * Archive des journaux caissier sur disque, hors de MySQL (bank.audit.archive.enabled).
+ * Les entrées sont ajoutées en binaire, par ordre chronologique, dans des segments
+ * de bank.audit.archive.segment-bytes octets au plus ; seul le dernier segment est ouvert en écriture.
+ * Chaque segment garde en mémoire un index clairsemé (date → position, environ tous les 4 Ko),
+ * reconstruit à l'ouverture, et se lit par projection mémoire (MappedByteBuffer).
+ *
+ * Format d'une entrée : longueur (int), date en ms, id, id du caissier (-1 si aucun),
+ * présence du montant (byte), montant (double), puis type, description, numéro de compte,
+ * nom du client, statut et détails (int longueur, -1 si null, puis UTF-8).
+ */
+@Component
+public class AuditSegmentStore {
+    private static final Logger logger = LoggerFactory.getLogger(AuditSegmentStore.class);
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final int INDEX_INTERVAL_BYTES = 4096;
+
+    @Value("${bank.audit.archive.enabled:false}")
+    private boolean enabled;
+
+    @Value("${bank.audit.archive.dir:audit/segments}")
+    private String directory;
+
+    @Value("${bank.audit.archive.segment-bytes:67108864}")
+    private long segmentBytes;
+
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    // Verrou explicite : écritures et force() sur disque se font sous le verrou, depuis des threads
+    // qui peuvent être virtuels, qu'un bloc synchronized épinglerait à leur thread porteur
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private FileChannel activeChannel;
+    private int rollSequence;
+
+    /**
+     * Entrée archivée : la vue exposée par l'API et le caissier auteur, pour filtrer par agence.
+     */
+    public record Entry(long cashierId, CashierLogView log) {
+    }
+
+    private static final class Segment {
+        final Path path;
+        final TreeMap<Long, Integer> index = new TreeMap<>();
+        volatile long size;
+        volatile long minTime = Long.MAX_VALUE;
+        volatile long maxTime = Long.MIN_VALUE;
+        long lastIndexedOffset = -INDEX_INTERVAL_BYTES;
+        MappedByteBuffer sealedBuffer;
+
+        Segment(Path path) {
+            this.path = path;
+        }
+
+        void track(long time, long offset) {
+            if (offset - lastIndexedOffset >= INDEX_INTERVAL_BYTES) {
+                synchronized (index) {
+                    index.putIfAbsent(time, (int) offset);
+                }
+                lastIndexedOffset = offset;
+            }
+            minTime = Math.min(minTime, time);
+            maxTime = Math.max(maxTime, time);
+        }
+
+        int startOffset(long from) {
+            synchronized (index) {
+                Map.Entry<Long, Integer> floor = index.floorEntry(from);
+                return floor != null ? floor.getValue() : 0;
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        // Positions de l'index et projections mémoire sont limitées à un int
+        if (segmentBytes <= 0 || segmentBytes > Integer.MAX_VALUE) {
+            throw new IllegalStateException("bank.audit.archive.segment-bytes doit être compris entre 1 et "
+                + Integer.MAX_VALUE + " : " + segmentBytes);
+        }
+        writeLock.lock();
+        try {
+            openSegments();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void openSegments() throws IOException {
+        Path dir = Paths.get(directory);
+        Files.createDirectories(dir);
+        List<Path> paths;
+        try (Stream<Path> files = Files.list(dir)) {
+            paths = files.filter(path -> path.toString().endsWith(SEGMENT_SUFFIX)).sorted().toList();
+        }
+        for (Path path : paths) {
+            Segment segment = new Segment(path);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long valid = scan(segment, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+                if (valid < channel.size()) {
+                    // Entrée incomplète en fin de fichier (arrêt brutal pendant une écriture)
+                    logger.warn("Segment {} tronqué de {} à {} octets", path, channel.size(), valid);
+                    channel.truncate(valid);
+                }
+                segment.size = valid;
+            }
+            segments.add(segment);
+        }
+        logger.info("Archive des journaux caissier : {} segments dans {}", segments.size(), dir);
+    }
+
+    /**
+     * Ajoute des entrées, supposées triées par date, et les force sur disque avant de rendre la main.
+     */
+    public void append(List<Entry> entries) {
+        if (!enabled || entries.isEmpty()) {
+            return;
+        }
+        writeLock.lock();
+        try {
+            for (Entry entry : entries) {
+                ByteBuffer encoded = encode(entry);
+                Segment active = activeSegment(encoded.remaining());
+                long offset = active.size;
+                while (encoded.hasRemaining()) {
+                    activeChannel.write(encoded);
+                }
+                active.size = offset + encoded.limit();
+                active.track(toMillis(entry.log().date()), offset);
+            }
+            activeChannel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Entrées de [from, to[ acceptées par {@code cashierFilter}, de la plus récente à la plus ancienne.
+     */
+    public List<CashierLogView> range(LocalDateTime from, LocalDateTime to, LongPredicate cashierFilter, int limit) {
+        long fromMillis = toMillis(from);
+        long toMillis = toMillis(to);
+        List<CashierLogView> result = new ArrayList<>();
+        List<Segment> snapshot = new ArrayList<>(segments);
+        for (int i = snapshot.size() - 1; i >= 0 && result.size() < limit; i--) {
+            Segment segment = snapshot.get(i);
+            if (segment.maxTime < fromMillis || segment.minTime >= toMillis) {
+                continue;
+            }
+            ByteBuffer buffer = read(segment);
+            if (buffer == null) {
+                continue;
+            }
+            List<CashierLogView> matches = new ArrayList<>();
+            buffer.position(segment.startOffset(fromMillis));
+            while (buffer.position() < segment.size) {
+                long time = buffer.getLong(buffer.position() + Integer.BYTES);
+                if (time >= toMillis) {
+                    break;
+                }
+                Entry entry = decode(buffer);
+                if (time >= fromMillis && cashierFilter.test(entry.cashierId())) {
+                    matches.add(entry.log());
+                }
+            }
+            Collections.reverse(matches);
+            result.addAll(matches.subList(0, Math.min(matches.size(), limit - result.size())));
+        }
+        return result;
+    }
+
+    /**
+     * Les {@code count} dernières entrées archivées, de la plus récente à la plus ancienne.
+     */
+    public List<CashierLogView> tail(int count) {
+        return range(LocalDateTime.of(1970, 1, 1, 0, 0), LocalDateTime.now().plusYears(100), id -> true, count);
+    }
+
+    /**
+     * Supprime les segments fermés dont toutes les entrées sont antérieures à {@code before}.
+     */
+    public int deleteSegmentsBefore(LocalDateTime before) {
+        long limit = toMillis(before);
+        int deleted = 0;
+        writeLock.lock();
+        try {
+            List<Segment> snapshot = new ArrayList<>(segments);
+            for (int i = 0; i < snapshot.size(); i++) {
+                Segment segment = snapshot.get(i);
+                boolean active = i == snapshot.size() - 1 && activeChannel != null;
+                if (!active && segment.maxTime < limit) {
+                    try {
+                        segments.remove(segment);
+                        segment.sealedBuffer = null;
+                        Files.deleteIfExists(segment.path);
+                        deleted++;
+                    } catch (IOException e) {
+                        logger.error("Suppression du segment {} impossible", segment.path, e);
+                    }
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        return deleted;
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        writeLock.lock();
+        try {
+            if (activeChannel != null) {
+                activeChannel.force(true);
+                activeChannel.close();
+                activeChannel = null;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private Segment activeSegment(int recordSize) throws IOException {
+        Segment last = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (last != null && last.size + recordSize <= segmentBytes) {
+            if (activeChannel == null) {
+                activeChannel = FileChannel.open(last.path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            return last;
+        }
+        // Fermer le segment courant et en ouvrir un nouveau ; le nom garde l'ordre chronologique
+        if (activeChannel != null) {
+            activeChannel.force(true);
+            activeChannel.close();
+        }
+        Path path = Paths.get(directory, String.format("audit-%020d-%06d%s",
+            System.currentTimeMillis(), rollSequence++ % 1_000_000, SEGMENT_SUFFIX));
+        activeChannel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        Segment segment = new Segment(path);
+        segments.add(segment);
+        return segment;
+    }
+
+    // Retourne null si le segment a été supprimé par deleteSegmentsBefore depuis la copie de range()
+    private ByteBuffer read(Segment segment) {
+        List<Segment> current = new ArrayList<>(segments);
+        if (!current.contains(segment)) {
+            return null;
+        }
+        boolean active = segment == current.get(current.size() - 1) && activeChannel != null;
+        MappedByteBuffer sealed = segment.sealedBuffer;
+        if (!active && sealed != null) {
+            return sealed.duplicate();
+        }
+        try (FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, segment.size);
+            if (!active) {
+                segment.sealedBuffer = buffer;
+            }
+            return buffer.duplicate();
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Reconstruit l'index et les bornes du segment ; retourne la taille valide
+    private static long scan(Segment segment, ByteBuffer buffer) {
+        while (buffer.remaining() >= Integer.BYTES) {
+            int offset = buffer.position();
+            int length = buffer.getInt(offset);
+            if (length <= 0 || buffer.remaining() < Integer.BYTES + length) {
+                return offset;
+            }
+            segment.track(buffer.getLong(offset + Integer.BYTES), offset);
+            buffer.position(offset + Integer.BYTES + length);
+        }
+        return buffer.position();
+    }
+
+    private static ByteBuffer encode(Entry entry) {
+        CashierLogView log = entry.log();
+        byte[][] strings = {
+            bytes(log.type()), bytes(log.description()), bytes(log.accountNumber()),
+            bytes(log.userName()), bytes(log.status()), bytes(log.details())
+        };
+        int length = Long.BYTES * 3 + 1 + Double.BYTES;
+        for (byte[] value : strings) {
+            length += Integer.BYTES + (value != null ? value.length : 0);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + length);
+        buffer.putInt(length);
+        buffer.putLong(toMillis(log.date()));
+        buffer.putLong(log.id() != null ? log.id() : -1L);
+        buffer.putLong(entry.cashierId());
+        buffer.put((byte) (log.amount() != null ? 1 : 0));
+        buffer.putDouble(log.amount() != null ? log.amount() : 0.0);
+        for (byte[] value : strings) {
+            buffer.putInt(value != null ? value.length : -1);
+            if (value != null) {
+                buffer.put(value);
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static Entry decode(ByteBuffer buffer) {
+        buffer.getInt();
+        LocalDateTime date = LocalDateTime.ofInstant(Instant.ofEpochMilli(buffer.getLong()), ZoneId.systemDefault());
+        long id = buffer.getLong();
+        long cashierId = buffer.getLong();
+        boolean hasAmount = buffer.get() == 1;
+        double amount = buffer.getDouble();
+        String type = string(buffer);
+        String description = string(buffer);
+        String accountNumber = string(buffer);
+        String userName = string(buffer);
+        String status = string(buffer);
+        String details = string(buffer);
+        return new Entry(cashierId, new CashierLogView(id >= 0 ? id : null, type, description, date,
+            hasAmount ? amount : null, accountNumber, userName, status, details));
+    }
+
+    private static byte[] bytes(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static String string(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] value = new byte[length];
+        buffer.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    private static long toMillis(LocalDateTime date) {
+        return date.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,345 @@
+package com.example.bank.demo.service;
+
+import com.example.bank.demo.model.Account;
+import com.example.bank.demo.repository.AccountRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.DoubleConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Point d'entrée unique pour toute modification de solde.
+ * Par défaut les soldes sont modifiés en base sous verrou de ligne (SELECT ... FOR UPDATE),
+ * les deux comptes d'un virement étant verrouillés par ordre croissant d'id.
+ * Avec bank.ledger.in-memory=true ils sont tenus par {@link InMemoryBalanceLedger}
+ * et réécrits en base par lots.
+ */
+@Service
+public class BalanceLedgerService {
+    private static final Logger logger = LoggerFactory.getLogger(BalanceLedgerService.class);
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private InMemoryBalanceLedger inMemoryLedger;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${bank.ledger.in-memory:false}")
+    private boolean inMemory;
+
+    @Value("${bank.transfer.lock.max-attempts:5}")
+    private int maxLockAttempts;
+
+    @Value("${bank.transfer.lock.backoff-ms:20}")
+    private long lockBackoffMs;
+
+    private final Counter lockContention;
+    private final Counter lockRetries;
+
+    public BalanceLedgerService(MeterRegistry meterRegistry) {
+        this.lockContention = Counter.builder("bank.transfer.lock.contention")
+            .description("Échecs d'acquisition de verrou (timeout ou deadlock)")
+            .register(meterRegistry);
+        this.lockRetries = Counter.builder("bank.transfer.lock.retries")
+            .description("Tentatives rejouées après un échec de verrou")
+            .register(meterRegistry);
+    }
+
+    public double balanceOf(Account account) {
+        if (inMemory) {
+            return InMemoryBalanceLedger.fromMinorUnits(inMemoryLedger.balanceOf(account));
+        }
+        return account.getBalance();
+    }
+
+    public double credit(Account account, double amount) {
+        return credit(account, amount, () -> { });
+    }
+
+    /**
+     * Crédite {@code account} et exécute {@code journal} (écriture de la transaction)
+     * dans la même transaction base ; retourne le nouveau solde.
+     */
+    public double credit(Account account, double amount, Runnable journal) {
+        requirePositive(amount);
+        if (inMemory) {
+            long minorAmount = InMemoryBalanceLedger.toMinorUnits(amount);
+            long balance = inMemoryLedger.credit(account, minorAmount);
+            journalOrCompensate(journal, () -> inMemoryLedger.credit(account, -minorAmount));
+            return InMemoryBalanceLedger.fromMinorUnits(balance);
+        }
+        return withRowLocks(() -> {
+            double balance = applyLocked(account, amount, lockBalance(account));
+            journal.run();
+            return balance;
+        });
+    }
+
+    public double debit(Account account, double amount) {
+        return debit(account, amount, () -> { });
+    }
+
+    /**
+     * Débite {@code account} et exécute {@code journal} dans la même transaction base ;
+     * un solde insuffisant au moment du verrou n'écrit donc aucune transaction.
+     */
+    public double debit(Account account, double amount, Runnable journal) {
+        requirePositive(amount);
+        if (inMemory) {
+            long minorAmount = InMemoryBalanceLedger.toMinorUnits(amount);
+            long balance = inMemoryLedger.debit(account, minorAmount);
+            journalOrCompensate(journal, () -> inMemoryLedger.credit(account, minorAmount));
+            return InMemoryBalanceLedger.fromMinorUnits(balance);
+        }
+        return withRowLocks(() -> {
+            double balance = applyLocked(account, -amount, lockBalance(account));
+            journal.run();
+            return balance;
+        });
+    }
+
+    /**
+     * Remet le solde à zéro pour une clôture : verrou, lecture et remise à zéro en une seule
+     * opération, puis {@code journal} reçoit le solde soldé dans la même transaction base.
+     * Retourne ce solde.
+     */
+    public double close(Account account, DoubleConsumer journal) {
+        if (inMemory) {
+            long previous = inMemoryLedger.drain(account);
+            double previousBalance = InMemoryBalanceLedger.fromMinorUnits(previous);
+            journalOrCompensate(() -> journal.accept(previousBalance), () -> inMemoryLedger.credit(account, previous));
+            return previousBalance;
+        }
+        return withRowLocks(() -> {
+            double previousBalance = lockBalance(account);
+            accountRepository.updateBalanceById(account.getId(), 0.0);
+            account.setBalance(0.0);
+            journal.accept(previousBalance);
+            return previousBalance;
+        });
+    }
+
+    public void overwrite(Account account, double balance) {
+        if (inMemory) {
+            inMemoryLedger.overwrite(account, InMemoryBalanceLedger.toMinorUnits(balance));
+            return;
+        }
+        withRowLocks(() -> {
+            lockBalance(account);
+            accountRepository.updateBalanceById(account.getId(), balance);
+            account.setBalance(balance);
+            return balance;
+        });
+    }
+
+    /**
+     * Débite {@code from}, crédite {@code to} et exécute {@code journal} (écriture des
+     * transactions) dans la même transaction base.
+     */
+    public void transfer(Account from, Account to, double amount, Runnable journal) {
+        if (from.getId().equals(to.getId())) {
+            throw new RuntimeException("Le compte source et le compte destinataire sont identiques");
+        }
+        requirePositive(amount);
+        if (inMemory) {
+            long minorAmount = InMemoryBalanceLedger.toMinorUnits(amount);
+            inMemoryLedger.debit(from, minorAmount);
+            inMemoryLedger.credit(to, minorAmount);
+            journalOrCompensate(journal, () -> {
+                inMemoryLedger.credit(from, minorAmount);
+                inMemoryLedger.credit(to, -minorAmount);
+            });
+            return;
+        }
+        withRowLocks(() -> {
+            // Toujours verrouiller le plus petit id en premier pour éviter les deadlocks A->B / B->A
+            boolean fromFirst = from.getId() < to.getId();
+            Double firstBalance = lockBalance(fromFirst ? from : to);
+            Double secondBalance = lockBalance(fromFirst ? to : from);
+            Double fromBalance = fromFirst ? firstBalance : secondBalance;
+            Double toBalance = fromFirst ? secondBalance : firstBalance;
+
+            applyLocked(from, -amount, fromBalance);
+            applyLocked(to, amount, toBalance);
+            journal.run();
+            return null;
+        });
+    }
+
+    /**
+     * Débite {@code from} du total de {@code credits}, crédite chaque compte destinataire
+     * et exécute {@code journal}, le tout dans une seule transaction base.
+     * Les lignes sont verrouillées en une requête, dans l'ordre des ids, et mises à jour
+     * par lot JDBC. Retourne le nouveau solde du compte source.
+     */
+    public double transferBatch(Account from, Map<Account, Double> credits, Runnable journal) {
+        credits.values().forEach(BalanceLedgerService::requirePositive);
+        double total = credits.values().stream().mapToDouble(Double::doubleValue).sum();
+        if (inMemory) {
+            // Débit = somme des crédits arrondis : arrondir le total créerait ou détruirait des centimes
+            Map<Account, Long> minorCredits = new LinkedHashMap<>();
+            credits.forEach((account, amount) -> minorCredits.put(account, InMemoryBalanceLedger.toMinorUnits(amount)));
+            long minorTotal = minorCredits.values().stream().mapToLong(Long::longValue).sum();
+            long fromBalance = inMemoryLedger.debit(from, minorTotal);
+            minorCredits.forEach(inMemoryLedger::credit);
+            journalOrCompensate(journal, () -> {
+                inMemoryLedger.credit(from, minorTotal);
+                minorCredits.forEach((account, amount) -> inMemoryLedger.credit(account, -amount));
+            });
+            return InMemoryBalanceLedger.fromMinorUnits(fromBalance);
+        }
+        return withRowLocks(() -> {
+            Set<Long> ids = new HashSet<>();
+            ids.add(from.getId());
+            credits.keySet().forEach(account -> ids.add(account.getId()));
+
+            Map<Long, Double> locked = new HashMap<>();
+            for (Object[] row : accountRepository.lockBalancesByIdIn(ids)) {
+                locked.put(((Number) row[0]).longValue(), ((Number) row[1]).doubleValue());
+            }
+            if (locked.size() != ids.size()) {
+                throw new RuntimeException("Account not found");
+            }
+
+            double fromBalance = locked.get(from.getId()) - total;
+            if (fromBalance < 0) {
+                throw new RuntimeException("Solde insuffisant");
+            }
+
+            List<Object[]> updates = new ArrayList<>(credits.size() + 1);
+            updates.add(new Object[] { fromBalance, from.getId() });
+            credits.forEach((account, amount) ->
+                updates.add(new Object[] { locked.get(account.getId()) + amount, account.getId() }));
+            jdbcTemplate.batchUpdate("UPDATE account SET balance = ? WHERE id = ?", updates);
+
+            journal.run();
+            return fromBalance;
+        });
+    }
+
+    // Oublie le solde en mémoire d'un compte supprimé, une fois la suppression validée : si elle
+    // est annulée, le solde (éventuellement pas encore réécrit en base) doit rester en mémoire
+    public void evict(Long accountId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    inMemoryLedger.evict(accountId);
+                }
+            });
+        } else {
+            inMemoryLedger.evict(accountId);
+        }
+    }
+
+    // Un montant négatif ou nul inverserait le sens du mouvement
+    private static void requirePositive(Double amount) {
+        if (amount == null || amount <= 0 || amount.isNaN() || amount.isInfinite()) {
+            throw new RuntimeException("Le montant doit être positif");
+        }
+    }
+
+    // Écrit le journal en base ; annule le mouvement en mémoire s'il n'a pas pu être écrit.
+    // Dans une transaction englobante, le journal n'est acquis qu'à son commit : son rollback
+    // (ou l'échec de son commit) annule aussi le mouvement, une seule fois.
+    private void journalOrCompensate(Runnable journal, Runnable compensation) {
+        AtomicBoolean compensated = new AtomicBoolean();
+        Runnable compensateOnce = () -> {
+            if (compensated.compareAndSet(false, true)) {
+                compensation.run();
+            }
+        };
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        compensateOnce.run();
+                    } else if (status == STATUS_UNKNOWN) {
+                        logger.error("Issue inconnue de la transaction englobante : mouvement en mémoire conservé, à rapprocher du journal");
+                    }
+                }
+            });
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> journal.run());
+        } catch (RuntimeException e) {
+            compensateOnce.run();
+            throw e;
+        }
+    }
+
+    private Double lockBalance(Account account) {
+        Double balance = accountRepository.lockBalanceById(account.getId());
+        if (balance == null) {
+            throw new RuntimeException("Account not found");
+        }
+        return balance;
+    }
+
+    private double applyLocked(Account account, double delta, double lockedBalance) {
+        double newBalance = lockedBalance + delta;
+        if (delta < 0 && newBalance < 0) {
+            throw new RuntimeException("Solde insuffisant");
+        }
+        accountRepository.updateBalanceById(account.getId(), newBalance);
+        account.setBalance(newBalance);
+        return newBalance;
+    }
+
+    /**
+     * Exécute {@code work} dans une transaction et la rejoue avec un backoff exponentiel
+     * borné si le verrou n'a pas pu être obtenu. Sans effet de rejeu si une transaction
+     * englobante est déjà ouverte : c'est alors à l'appelant de gérer l'échec.
+     */
+    private <T> T withRowLocks(Supplier<T> work) {
+        boolean outerTransaction = TransactionSynchronizationManager.isActualTransactionActive();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> work.get());
+            } catch (PessimisticLockingFailureException e) {
+                lockContention.increment();
+                if (outerTransaction || attempt >= maxLockAttempts) {
+                    throw e;
+                }
+                lockRetries.increment();
+                long backoff = lockBackoffMs * (1L << (attempt - 1));
+                logger.warn("Verrou non obtenu (tentative {}/{}), nouvel essai dans ~{} ms",
+                    attempt, maxLockAttempts, backoff);
+                try {
+                    Thread.sleep(backoff + ThreadLocalRandom.current().nextLong(lockBackoffMs + 1));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+}
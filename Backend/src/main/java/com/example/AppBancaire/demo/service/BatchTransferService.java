@@ -0,0 +1,167 @@
+package com.example.bank.demo.service;
+
+import com.example.bank.demo.exception.ValidationException;
+import com.example.bank.demo.model.Account;
+import com.example.bank.demo.model.BatchTransferRequest;
+import com.example.bank.demo.model.Transaction;
+import com.example.bank.demo.repository.AccountRepository;
+import com.example.bank.demo.repository.TransactionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Virements multiples (paie, fournisseurs) depuis un même compte source :
+ * une seule requête pour résoudre les destinataires, une validation en mémoire,
+ * puis tous les mouvements et toutes les transactions dans une seule transaction base.
+ */
+@Service
+public class BatchTransferService {
+    private static final Logger logger = LoggerFactory.getLogger(BatchTransferService.class);
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private NameMatchingService nameMatchingService;
+
+    @Autowired
+    private BalanceLedgerService balanceLedgerService;
+
+    @Autowired
+    private AgencyAggregateService agencyAggregateService;
+
+    @Value("${bank.transfer.batch.max-size:10000}")
+    private int maxBatchSize;
+
+    public Map<String, Object> executeBatch(Account fromAccount, BatchTransferRequest request) {
+        List<BatchTransferRequest.Item> items = request.getTransfers();
+        if (items == null || items.isEmpty()) {
+            throw new RuntimeException("Aucun virement dans le lot");
+        }
+        if (items.size() > maxBatchSize) {
+            throw new RuntimeException("Lot trop volumineux (maximum " + maxBatchSize + " virements)");
+        }
+
+        // Vérifier le mot de passe une seule fois pour tout le lot
+        if (!userService.verifyPassword(fromAccount.getUser().getId(), request.getPassword())) {
+            throw new RuntimeException("Invalid password");
+        }
+        if ("CLOSED".equals(fromAccount.getStatus())) {
+            throw new RuntimeException("Le compte source est clôturé");
+        }
+
+        Set<String> accountNumbers = items.stream()
+            .map(BatchTransferRequest.Item::getToAccountNumber)
+            .collect(Collectors.toSet());
+        Map<String, Account> destinations = accountRepository.findByAccountNumberIn(accountNumbers).stream()
+            .collect(Collectors.toMap(Account::getAccountNumber, Function.identity()));
+
+        // Valider toutes les lignes avant de toucher aux soldes ; chaque montant est arrondi au
+        // centime une fois pour toutes, de sorte que débit, crédits et journal portent les mêmes valeurs
+        Map<String, String> errors = new LinkedHashMap<>();
+        Map<Account, Double> credits = new LinkedHashMap<>();
+        double[] amounts = new double[items.size()];
+        long minorTotal = 0;
+        for (int i = 0; i < items.size(); i++) {
+            BatchTransferRequest.Item item = items.get(i);
+            String key = "transfers[" + i + "]";
+            Account destination = destinations.get(item.getToAccountNumber());
+            long minorAmount = item.getAmount() == null || item.getAmount().isNaN() || item.getAmount().isInfinite()
+                ? 0 : InMemoryBalanceLedger.toMinorUnits(item.getAmount());
+            if (minorAmount <= 0) {
+                errors.put(key, "Montant invalide");
+            } else if (destination == null) {
+                errors.put(key, "Compte destinataire non trouvé");
+            } else if (destination.getId().equals(fromAccount.getId())) {
+                errors.put(key, "Le compte source et le compte destinataire sont identiques");
+            } else if ("CLOSED".equals(destination.getStatus())) {
+                errors.put(key, "Le compte destinataire est clôturé");
+            } else if (item.getBeneficiaryName() != null
+                    && !nameMatchingService.areNamesMatching(item.getBeneficiaryName(), destination.getUser().getFullName())) {
+                errors.put(key, "Le nom du bénéficiaire ne correspond pas au titulaire du compte");
+            } else {
+                amounts[i] = InMemoryBalanceLedger.fromMinorUnits(minorAmount);
+                minorTotal += minorAmount;
+                credits.merge(destination, amounts[i], Double::sum);
+            }
+        }
+        if (!errors.isEmpty()) {
+            throw new ValidationException(errors);
+        }
+
+        double total = InMemoryBalanceLedger.fromMinorUnits(minorTotal);
+        if (balanceLedgerService.balanceOf(fromAccount) < total) {
+            throw new RuntimeException("Solde insuffisant");
+        }
+
+        String description = request.getDescription() != null ? request.getDescription() : "Virement groupé";
+        double newBalance = balanceLedgerService.transferBatch(fromAccount, credits, () -> {
+            List<Transaction> transactions = buildTransactions(fromAccount, items, amounts, destinations, description);
+            transactionRepository.saveAll(transactions);
+            agencyAggregateService.recordAll(transactions);
+        });
+
+        logger.info("Lot de {} virements exécuté depuis le compte {}", items.size(), fromAccount.getAccountNumber());
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("message", "Virements effectués avec succès");
+        result.put("count", items.size());
+        result.put("totalAmount", total);
+        result.put("newBalance", newBalance);
+        return result;
+    }
+
+    private List<Transaction> buildTransactions(Account fromAccount, List<BatchTransferRequest.Item> items, double[] amounts,
+                                                Map<String, Account> destinations, String description) {
+        Date now = new Date();
+        List<Transaction> transactions = new ArrayList<>(items.size() * 2);
+        for (int i = 0; i < items.size(); i++) {
+            Account toAccount = destinations.get(items.get(i).getToAccountNumber());
+            String transferId = UUID.randomUUID().toString();
+
+            Transaction debitTransaction = new Transaction();
+            debitTransaction.setAccount(fromAccount);
+            debitTransaction.setAmount(amounts[i]);
+            debitTransaction.setType("DEBIT");
+            debitTransaction.setDescription(description + " vers " + toAccount.getAccountNumber());
+            debitTransaction.setFromAccount(fromAccount.getAccountNumber());
+            debitTransaction.setToAccount(toAccount.getAccountNumber());
+            debitTransaction.setDate(now);
+            debitTransaction.setStatus("SUCCESS");
+            debitTransaction.setTransferId(transferId);
+            transactions.add(debitTransaction);
+
+            Transaction creditTransaction = new Transaction();
+            creditTransaction.setAccount(toAccount);
+            creditTransaction.setAmount(amounts[i]);
+            creditTransaction.setType("CREDIT");
+            creditTransaction.setDescription(description + " depuis " + fromAccount.getAccountNumber());
+            creditTransaction.setFromAccount(fromAccount.getAccountNumber());
+            creditTransaction.setToAccount(toAccount.getAccountNumber());
+            creditTransaction.setDate(now);
+            creditTransaction.setStatus("SUCCESS");
+            creditTransaction.setTransferId(transferId);
+            transactions.add(creditTransaction);
+        }
+        return transactions;
+    }
+}
@@ -0,0 +1,291 @@
+package com.example.bank.demo.service;
+
+import com.example.bank.demo.model.CashierLog;
+import com.example.bank.demo.model.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Écriture des journaux caissier hors du chemin de la requête (bank.audit.async=true, défaut).
+ * Les entrées sont déposées dans une file bornée et insérées par lots JDBC par un writer dédié.
+ * Si la file reste pleine plus de bank.audit.offer-timeout-ms, ou si la base refuse un lot,
+ * les entrées sont ajoutées au fichier bank.audit.spill-file (synchronisé sur disque) puis
+ * réinjectées en base dès que le writer a vidé la file. La file est vidée à l'arrêt.
+ * Livraison au moins une fois : un lot rejoué après un échec partiel peut être inséré deux fois.
+ * Une ligne illisible du fichier de débordement est mise de côté dans {@code <spill-file>.rejected}.
+ */
+@Component
+public class CashierAuditWriter {
+    private static final Logger logger = LoggerFactory.getLogger(CashierAuditWriter.class);
+
+    private static final String INSERT_SQL =
+        "INSERT INTO cashier_logs (type, description, date, amount, account_number, user_name, status, details, cashier_id) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // Forme d'une entrée dans le fichier de débordement
+    record SpilledLog(String type, String description, LocalDateTime date, Double amount, String accountNumber,
+                      String userName, String status, String details, Long cashierId) {
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${bank.audit.async:true}")
+    private boolean async;
+
+    @Value("${bank.audit.flush-ms:50}")
+    private long flushMs;
+
+    @Value("${bank.audit.max-batch-size:500}")
+    private int maxBatchSize;
+
+    @Value("${bank.audit.offer-timeout-ms:20}")
+    private long offerTimeoutMs;
+
+    @Value("${bank.audit.spill-file:audit/cashier-logs.spill}")
+    private String spillFile;
+
+    private final BlockingQueue<SpilledLog> buffer;
+    private final Counter spilledCounter;
+    private final Counter rejectedCounter;
+    // Verrou explicite : l'écriture synchronisée sur disque peut se faire sur un thread de requête
+    // virtuel, qu'un bloc synchronized épinglerait à son thread porteur
+    private final ReentrantLock spillLock = new ReentrantLock();
+    private ScheduledExecutorService writer;
+
+    public CashierAuditWriter(@Value("${bank.audit.buffer-size:10000}") int bufferSize, MeterRegistry meterRegistry) {
+        this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        Gauge.builder("bank.audit.queue.size", buffer, BlockingQueue::size)
+            .description("Journaux caissier en attente d'écriture")
+            .register(meterRegistry);
+        this.spilledCounter = Counter.builder("bank.audit.spilled")
+            .description("Journaux caissier écrits dans le fichier de débordement")
+            .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("bank.audit.rejected")
+            .description("Lignes illisibles du fichier de débordement mises de côté")
+            .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!async) {
+            return;
+        }
+        writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cashier-audit-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.scheduleWithFixedDelay(this::drain, flushMs, flushMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void submit(CashierLog log) {
+        User cashier = log.getCashier();
+        SpilledLog entry = new SpilledLog(log.getType(), log.getDescription(), log.getDate(), log.getAmount(),
+            log.getAccountNumber(), log.getUserName(), log.getStatus(), log.getDetails(),
+            cashier != null ? cashier.getId() : null);
+        if (!async) {
+            insert(List.of(entry));
+            return;
+        }
+        try {
+            // Attente courte : ralentit l'appelant quand le writer prend du retard
+            if (buffer.offer(entry, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        spill(List.of(entry));
+    }
+
+    private void drain() {
+        List<SpilledLog> batch = new ArrayList<>(maxBatchSize);
+        boolean healthy = true;
+        while (buffer.drainTo(batch, maxBatchSize) > 0) {
+            try {
+                insert(batch);
+            } catch (Exception e) {
+                logger.error("Échec d'écriture de {} journaux caissier, report sur disque", batch.size(), e);
+                spill(batch);
+                healthy = false;
+            }
+            batch.clear();
+        }
+        if (healthy) {
+            replaySpill();
+        }
+    }
+
+    private void insert(List<SpilledLog> entries) {
+        List<Object[]> rows = new ArrayList<>(entries.size());
+        for (SpilledLog entry : entries) {
+            rows.add(new Object[] {
+                entry.type(), entry.description(), entry.date() != null ? Timestamp.valueOf(entry.date()) : null,
+                entry.amount(), entry.accountNumber(), entry.userName(), entry.status(), entry.details(), entry.cashierId()
+            });
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+    }
+
+    private void spill(List<SpilledLog> entries) {
+        StringBuilder lines = new StringBuilder();
+        try {
+            for (SpilledLog entry : entries) {
+                lines.append(objectMapper.writeValueAsString(entry)).append('\n');
+            }
+            spillLock.lock();
+            try {
+                Path path = Paths.get(spillFile);
+                if (path.getParent() != null) {
+                    Files.createDirectories(path.getParent());
+                }
+                Files.write(path, lines.toString().getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.DSYNC);
+            } finally {
+                spillLock.unlock();
+            }
+            spilledCounter.increment(entries.size());
+        } catch (IOException e) {
+            // Dernier recours : le contenu reste au moins dans les logs applicatifs
+            logger.error("Journaux caissier perdus, impossible d'écrire {} : {}", spillFile, lines, e);
+        }
+    }
+
+    /**
+     * Réinjecte le fichier de débordement. Il est d'abord renommé pour que les nouveaux
+     * débordements aillent dans un fichier neuf ; en cas d'échec il sera repris au prochain cycle.
+     * La position atteinte est enregistrée dans {@code .replay.offset} après chaque lot inséré :
+     * une reprise ne réinsère que le lot en cours.
+     */
+    private void replaySpill() {
+        Path path = Paths.get(spillFile);
+        Path replaying = Paths.get(spillFile + ".replay");
+        Path offsetFile = Paths.get(spillFile + ".replay.offset");
+        try {
+            spillLock.lock();
+            try {
+                if (!Files.exists(replaying)) {
+                    if (!Files.exists(path)) {
+                        return;
+                    }
+                    Files.move(path, replaying, StandardCopyOption.ATOMIC_MOVE);
+                    Files.deleteIfExists(offsetFile);
+                }
+            } finally {
+                spillLock.unlock();
+            }
+
+            long offset = readOffset(offsetFile);
+            int replayed = 0;
+            List<SpilledLog> batch = new ArrayList<>(maxBatchSize);
+            try (InputStream in = Files.newInputStream(replaying)) {
+                in.skipNBytes(offset);
+                BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+                long position = offset;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    // Le fichier est écrit par spill() avec des fins de ligne '\n'
+                    position += line.getBytes(StandardCharsets.UTF_8).length + 1;
+                    if (!line.isBlank()) {
+                        SpilledLog entry = parse(line);
+                        if (entry != null) {
+                            batch.add(entry);
+                        }
+                    }
+                    if (batch.size() >= maxBatchSize) {
+                        insert(batch);
+                        replayed += batch.size();
+                        batch.clear();
+                        writeOffset(offsetFile, position);
+                    }
+                }
+            }
+            if (!batch.isEmpty()) {
+                insert(batch);
+                replayed += batch.size();
+            }
+            Files.delete(replaying);
+            Files.deleteIfExists(offsetFile);
+            logger.info("{} journaux caissier réinjectés depuis {}", replayed, replaying);
+        } catch (Exception e) {
+            logger.warn("Réinjection de {} différée", replaying, e);
+        }
+    }
+
+    // Une ligne illisible (écriture interrompue, format modifié) ne doit pas bloquer le reste du fichier
+    private SpilledLog parse(String line) throws IOException {
+        try {
+            return objectMapper.readValue(line, SpilledLog.class);
+        } catch (IOException e) {
+            logger.error("Ligne illisible dans {}, mise de côté : {}", spillFile, line, e);
+            Files.write(Paths.get(spillFile + ".rejected"), (line + '\n').getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.DSYNC);
+            rejectedCounter.increment();
+            return null;
+        }
+    }
+
+    private long readOffset(Path offsetFile) {
+        if (!Files.exists(offsetFile)) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(Files.readString(offsetFile, StandardCharsets.UTF_8).trim());
+        } catch (IOException | NumberFormatException e) {
+            logger.warn("Position de réinjection illisible dans {}, reprise au début du fichier", offsetFile, e);
+            return 0;
+        }
+    }
+
+    // Écriture dans un fichier temporaire puis renommage : la position lue est toujours complète
+    private void writeOffset(Path offsetFile, long position) throws IOException {
+        Path tmp = Paths.get(offsetFile + ".tmp");
+        Files.write(tmp, Long.toString(position).getBytes(StandardCharsets.UTF_8),
+            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.DSYNC);
+        Files.move(tmp, offsetFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (writer != null) {
+            writer.shutdown();
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+            drain();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.bank.demo.service;
+
+import com.example.bank.demo.model.CashierLogView;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Déplace chaque nuit les journaux caissier plus anciens que bank.audit.archive.retention-days
+ * de la table cashier_logs vers {@link AuditSegmentStore}, par lots de bank.audit.archive.chunk-size,
+ * puis supprime les segments plus anciens que bank.audit.archive.segment-retention-days.
+ * Un lot n'est supprimé en base qu'une fois écrit sur disque : un arrêt entre les deux
+ * peut archiver un lot deux fois, jamais le perdre.
+ */
+@Component
+public class CashierLogArchiver {
+    private static final Logger logger = LoggerFactory.getLogger(CashierLogArchiver.class);
+
+    private static final String SELECT_SQL =
+        "SELECT id, type, description, date, amount, account_number, user_name, status, details, cashier_id " +
+        "FROM cashier_logs WHERE date < ? ORDER BY date, id LIMIT ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private AuditSegmentStore auditSegmentStore;
+
+    @Value("${bank.audit.archive.retention-days:90}")
+    private int retentionDays;
+
+    @Value("${bank.audit.archive.segment-retention-days:3650}")
+    private int segmentRetentionDays;
+
+    @Value("${bank.audit.archive.chunk-size:5000}")
+    private int chunkSize;
+
+    @Scheduled(cron = "${bank.audit.archive.cron:0 30 2 * * *}")
+    public void archive() {
+        if (!auditSegmentStore.isEnabled()) {
+            return;
+        }
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(retentionDays);
+        long archived = 0;
+        List<AuditSegmentStore.Entry> chunk;
+        do {
+            chunk = jdbcTemplate.query(SELECT_SQL, (rs, rowNum) -> {
+                double amount = rs.getDouble("amount");
+                Double boxedAmount = rs.wasNull() ? null : amount;
+                long cashierId = rs.getLong("cashier_id");
+                return new AuditSegmentStore.Entry(rs.wasNull() ? -1L : cashierId, new CashierLogView(
+                    rs.getLong("id"), rs.getString("type"), rs.getString("description"),
+                    rs.getTimestamp("date").toLocalDateTime(), boxedAmount,
+                    rs.getString("account_number"), rs.getString("user_name"), rs.getString("status"),
+                    rs.getString("details")));
+            }, Timestamp.valueOf(cutoff), chunkSize);
+            if (chunk.isEmpty()) {
+                break;
+            }
+            auditSegmentStore.append(chunk);
+            jdbcTemplate.batchUpdate("DELETE FROM cashier_logs WHERE id = ?",
+                chunk.stream().map(entry -> new Object[] { entry.log().id() }).toList());
+            archived += chunk.size();
+        } while (chunk.size() == chunkSize);
+
+        int deletedSegments = auditSegmentStore.deleteSegmentsBefore(LocalDateTime.now().minusDays(segmentRetentionDays));
+        logger.info("Archivage des journaux caissier : {} entrées archivées, {} segments supprimés",
+            archived, deletedSegments);
+    }
+}
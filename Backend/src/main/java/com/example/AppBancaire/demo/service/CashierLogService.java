@@ -1,19 +1,45 @@
 package com.example.bank.demo.service;
 
 import com.example.bank.demo.model.CashierLog;
+import com.example.bank.demo.model.CashierLogView;
 import com.example.bank.demo.model.User;
 import com.example.bank.demo.repository.CashierLogRepository;
+import com.example.bank.demo.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
+/**
+ * Journal des opérations caissier. Les entrées sont confiées à {@link CashierAuditWriter} :
+ * en mode asynchrone, l'entrée retournée n'est pas encore en base et n'a pas d'id.
+ */
 @Service
 public class CashierLogService {
 
+    private static final int MAX_PAGE_SIZE = 500;
+
     @Autowired
     private CashierLogRepository cashierLogRepository;
 
+    @Autowired
+    private CashierAuditWriter cashierAuditWriter;
+
+    @Autowired
+    private AuditSegmentStore auditSegmentStore;
+
+    @Autowired
+    private UserRepository userRepository;
+
     public CashierLog createLog(String type, String description, User cashier, String status) {
         CashierLog log = new CashierLog();
         log.setType(type);
@@ -21,7 +47,8 @@ public class CashierLogService {
         log.setDate(LocalDateTime.now());
         log.setCashier(cashier);
         log.setStatus(status);
-        return cashierLogRepository.save(log);
+        cashierAuditWriter.submit(log);
+        return log;
     }
 
     public CashierLog createDetailedLog(
@@ -44,13 +71,93 @@ public class CashierLogService {
         log.setAccountNumber(accountNumber);
         log.setUserName(userName);
         log.setDetails(details);
-        return cashierLogRepository.save(log);
+        cashierAuditWriter.submit(log);
+        return log;
     }
 
     public List<CashierLog> getLogsByCashier(Long cashierId) {
         return cashierLogRepository.findByCashierIdOrderByDateDesc(cashierId);
     }
 
+    public List<CashierLogView> getLogViewsByCashier(Long cashierId) {
+        return cashierLogRepository.findViewsByCashierId(cashierId);
+    }
+
+    /**
+     * Journaux des caissiers d'une agence sur [from, to[, du plus récent au plus ancien,
+     * avec les statistiques de toute la période calculées par une requête groupée.
+     * {@code cursor} est le nextCursor de la page précédente, ou null pour la première page.
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> getAgencyLogPage(Long agencyId, LocalDateTime from, LocalDateTime to,
+                                                String cursor, int limit) {
+        PageRequest pageRequest = PageRequest.of(0, Math.max(1, Math.min(limit, MAX_PAGE_SIZE)));
+        Slice<CashierLogView> slice;
+        if (cursor == null || cursor.isEmpty()) {
+            slice = cashierLogRepository.findAgencyLogViews(agencyId, from, to, pageRequest);
+        } else {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", 2);
+                slice = cashierLogRepository.findAgencyLogViewsBefore(
+                    agencyId, from, to, LocalDateTime.parse(parts[0]), Long.parseLong(parts[1]), pageRequest);
+            } catch (RuntimeException e) {
+                throw new RuntimeException("Curseur invalide");
+            }
+        }
+
+        Map<String, Object> page = new HashMap<>();
+        page.put("logs", slice.getContent());
+        page.put("hasMore", slice.hasNext());
+        page.put("nextCursor", slice.hasNext() ? encodeCursor(slice.getContent().get(slice.getNumberOfElements() - 1)) : null);
+        page.put("statistics", getAgencyLogStatistics(agencyId, from, to));
+        return page;
+    }
+
+    private Map<String, Object> getAgencyLogStatistics(Long agencyId, LocalDateTime from, LocalDateTime to) {
+        long totalLogs = 0;
+        long successCount = 0;
+        long failureCount = 0;
+        double totalAmount = 0;
+        Map<String, Long> operationCounts = new HashMap<>();
+        for (Object[] row : cashierLogRepository.sumAgencyLogsByTypeAndStatus(agencyId, from, to)) {
+            long count = ((Number) row[2]).longValue();
+            totalLogs += count;
+            operationCounts.merge((String) row[0], count, Long::sum);
+            if ("SUCCESS".equals(row[1])) {
+                successCount += count;
+            } else if ("FAILED".equals(row[1])) {
+                failureCount += count;
+            }
+            totalAmount += ((Number) row[3]).doubleValue();
+        }
+
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("totalLogs", totalLogs);
+        statistics.put("operationCounts", operationCounts);
+        statistics.put("successCount", successCount);
+        statistics.put("failureCount", failureCount);
+        statistics.put("totalAmount", totalAmount);
+        return statistics;
+    }
+
+    private String encodeCursor(CashierLogView last) {
+        String raw = last.date() + "|" + last.id();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Journaux archivés des caissiers de l'agence sur [from, to[, lus dans les segments sur disque.
+     */
+    public List<CashierLogView> getArchivedAgencyLogs(Long agencyId, LocalDateTime from, LocalDateTime to, int limit) {
+        if (!auditSegmentStore.isEnabled()) {
+            throw new RuntimeException("Archive des journaux désactivée");
+        }
+        Set<Long> cashierIds = userRepository.findByRoleAndAgency_Id("ROLE_CASHIER", agencyId).stream()
+            .map(User::getId)
+            .collect(Collectors.toSet());
+        return auditSegmentStore.range(from, to, cashierIds::contains, Math.max(1, Math.min(limit, MAX_PAGE_SIZE)));
+    }
+
     public List<CashierLog> getAllLogs() {
         return cashierLogRepository.findAllByOrderByDateDesc();
     }
@@ -0,0 +1,133 @@
+package com.example.bank.demo.service;
+
+import com.example.bank.demo.model.Account;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Soldes des comptes tenus en mémoire, en centimes, et appliqués par CAS.
+ * Les comptes modifiés sont marqués et réécrits en base par lots en arrière-plan.
+ * Ce moteur suppose une seule instance de l'application par base.
+ */
+@Component
+public class InMemoryBalanceLedger {
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryBalanceLedger.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${bank.ledger.flush-batch-size:500}")
+    private int flushBatchSize;
+
+    private final ConcurrentHashMap<Long, AtomicLong> balances = new ConcurrentHashMap<>();
+    private final Set<Long> dirtyAccounts = ConcurrentHashMap.newKeySet();
+
+    public static long toMinorUnits(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    public static double fromMinorUnits(long minorUnits) {
+        return minorUnits / 100.0;
+    }
+
+    public long balanceOf(Account account) {
+        return entry(account).get();
+    }
+
+    public long credit(Account account, long amount) {
+        long balance = entry(account).addAndGet(amount);
+        dirtyAccounts.add(account.getId());
+        return balance;
+    }
+
+    public long debit(Account account, long amount) {
+        AtomicLong entry = entry(account);
+        while (true) {
+            long current = entry.get();
+            if (current < amount) {
+                throw new RuntimeException("Solde insuffisant");
+            }
+            if (entry.compareAndSet(current, current - amount)) {
+                dirtyAccounts.add(account.getId());
+                return current - amount;
+            }
+        }
+    }
+
+    /**
+     * Remet le solde à zéro et retourne le solde précédent, en une seule opération atomique.
+     */
+    public long drain(Account account) {
+        long previous = entry(account).getAndSet(0);
+        dirtyAccounts.add(account.getId());
+        return previous;
+    }
+
+    public void overwrite(Account account, long balance) {
+        entry(account).set(balance);
+        dirtyAccounts.add(account.getId());
+    }
+
+    // Le solde non réécrit est perdu : réservé aux comptes dont la suppression est validée
+    public void evict(Long accountId) {
+        balances.remove(accountId);
+        dirtyAccounts.remove(accountId);
+    }
+
+    private AtomicLong entry(Account account) {
+        return balances.computeIfAbsent(account.getId(),
+            id -> new AtomicLong(toMinorUnits(account.getBalance() != null ? account.getBalance() : 0.0)));
+    }
+
+    @Scheduled(fixedDelayString = "${bank.ledger.flush-interval-ms:100}")
+    public void flush() {
+        if (dirtyAccounts.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> batch = new ArrayList<>();
+        for (Long accountId : dirtyAccounts) {
+            // Retirer la marque avant de lire le solde : une écriture concurrente re-marquera le compte
+            dirtyAccounts.remove(accountId);
+            AtomicLong entry = balances.get(accountId);
+            if (entry == null) {
+                continue;
+            }
+            batch.add(new Object[] { fromMinorUnits(entry.get()), accountId });
+            if (batch.size() >= flushBatchSize) {
+                writeBatch(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            writeBatch(batch);
+        }
+    }
+
+    private void writeBatch(List<Object[]> batch) {
+        try {
+            jdbcTemplate.batchUpdate("UPDATE account SET balance = ? WHERE id = ?", batch);
+            logger.debug("Ledger flush: {} soldes écrits", batch.size());
+        } catch (Exception e) {
+            logger.error("Ledger flush failed, {} comptes seront réessayés", batch.size(), e);
+            batch.forEach(row -> dirtyAccounts.add((Long) row[1]));
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+}
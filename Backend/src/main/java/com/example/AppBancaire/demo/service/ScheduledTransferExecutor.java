@@ -0,0 +1,231 @@
+package com.example.bank.demo.service;
+
+import com.example.bank.demo.config.VirtualThreads;
+import com.example.bank.demo.model.Account;
+import com.example.bank.demo.model.VirementProgramme;
+import com.example.bank.demo.model.VirementStatus;
+import com.example.bank.demo.repository.VirementProgrammeRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Exécution des virements programmés échus, par lots de bank.virement.chunk-size.
+ * Un lot est réservé dans une transaction courte (SELECT ... FOR UPDATE SKIP LOCKED puis bail
+ * claimed_by/claimed_until) : plusieurs nœuds peuvent tourner en même temps sans se gêner.
+ * Chaque virement est ensuite exécuté dans sa propre transaction, qui relit la ligne sous verrou
+ * et la marque exécutée avec les écritures : un virement n'est jamais exécuté deux fois, et un
+ * nœud arrêté en cours de lot libère ses virements à l'expiration du bail.
+ * Les virements d'un même compte source passent par le même worker, dans l'ordre des échéances.
+ */
+@Component
+public class ScheduledTransferExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(ScheduledTransferExecutor.class);
+
+    @Autowired
+    private VirementProgrammeRepository virementProgrammeRepository;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private BalanceLedgerService balanceLedgerService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private VirtualThreads virtualThreads;
+
+    // Paresseux : TransferTimingWheel dépend lui-même de cet exécuteur
+    @Autowired
+    @Lazy
+    private TransferTimingWheel transferTimingWheel;
+
+    @Value("${bank.virement.chunk-size:100}")
+    private int chunkSize;
+
+    @Value("${bank.virement.lease-seconds:300}")
+    private long leaseSeconds;
+
+    @Value("${bank.virement.workers:4}")
+    private int workerCount;
+
+    @Value("${bank.node-id:}")
+    private String nodeId;
+
+    private ExecutorService[] workers;
+
+    @PostConstruct
+    public void start() {
+        if (nodeId.isBlank()) {
+            nodeId = UUID.randomUUID().toString();
+        }
+        workers = new ExecutorService[Math.max(1, workerCount)];
+        ThreadFactory threadFactory = virtualThreads.factory("virement-worker-");
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = Executors.newSingleThreadExecutor(threadFactory);
+        }
+    }
+
+    /**
+     * Exécute tous les virements échus, lot par lot ; retourne le nombre de virements traités.
+     */
+    public int runDueTransfers() {
+        int processed = 0;
+        while (true) {
+            Map<Long, Long> claimed = claim(now -> virementProgrammeRepository.lockDueTransfers(now, chunkSize));
+            if (claimed.isEmpty()) {
+                break;
+            }
+            List<CompletableFuture<Void>> tasks = new ArrayList<>(claimed.size());
+            claimed.forEach((virementId, sourceAccountId) -> tasks.add(dispatch(virementId, sourceAccountId)));
+            CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0])).join();
+            processed += claimed.size();
+            if (claimed.size() < chunkSize) {
+                break;
+            }
+        }
+        if (processed > 0) {
+            logger.info("{} virements programmés traités par le nœud {}", processed, nodeId);
+        }
+        return processed;
+    }
+
+    /**
+     * Exécute les virements donnés s'ils sont échus et libres, sans attendre la fin de leur exécution.
+     */
+    public void runTransfers(List<Long> virementIds) {
+        for (int from = 0; from < virementIds.size(); from += chunkSize) {
+            List<Long> chunk = virementIds.subList(from, Math.min(from + chunkSize, virementIds.size()));
+            claim(now -> virementProgrammeRepository.lockDueTransfersByIds(chunk, now))
+                .forEach((virementId, sourceAccountId) -> dispatch(virementId, sourceAccountId));
+        }
+    }
+
+    private CompletableFuture<Void> dispatch(Long virementId, Long sourceAccountId) {
+        return CompletableFuture.runAsync(() -> execute(virementId),
+            workers[Math.floorMod(sourceAccountId.hashCode(), workers.length)]);
+    }
+
+    // Réserve des virements pour ce nœud ; retourne id du virement → id du compte source
+    private Map<Long, Long> claim(Function<LocalDateTime, List<Object[]>> lockRows) {
+        return transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            Map<Long, Long> claimed = new LinkedHashMap<>();
+            for (Object[] row : lockRows.apply(now)) {
+                claimed.put(((Number) row[0]).longValue(), row[1] != null ? ((Number) row[1]).longValue() : 0L);
+            }
+            if (!claimed.isEmpty()) {
+                virementProgrammeRepository.claim(claimed.keySet(), nodeId, now.plusSeconds(leaseSeconds));
+            }
+            return claimed;
+        });
+    }
+
+    private void execute(Long virementId) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> virementProgrammeRepository
+                .findClaimedForUpdate(virementId, nodeId)
+                .ifPresent(this::transfer));
+        } catch (Exception e) {
+            // La transaction du virement est annulée : le refus est enregistré à part
+            logger.error("Erreur lors de l'exécution du virement programmé ID=" + virementId, e);
+            transactionTemplate.executeWithoutResult(status -> virementProgrammeRepository
+                .findClaimedForUpdate(virementId, nodeId)
+                .ifPresent(virement -> settle(virement, VirementStatus.REFUSE,
+                    "Erreur technique : " + e.getMessage())));
+        }
+    }
+
+    private void transfer(VirementProgramme virement) {
+        logger.info("Exécution du virement programmé ID={}", virement.getId());
+        Account sourceAccount = virement.getCompteSource();
+        if (balanceLedgerService.balanceOf(sourceAccount) >= virement.getMontant()) {
+            Account destinationAccount = accountService.findByAccountNumber(virement.getNumeroCompteDestination())
+                .orElseThrow(() -> new RuntimeException("Compte destinataire non trouvé"));
+
+            balanceLedgerService.transfer(sourceAccount, destinationAccount, virement.getMontant(),
+                () -> accountService.createTransactionPair(
+                    sourceAccount,
+                    destinationAccount,
+                    virement.getMontant(),
+                    "Virement programmé"
+                ));
+            logger.info("Virement programmé ID={} exécuté avec succès", virement.getId());
+            settle(virement, VirementStatus.EXECUTE, null);
+        } else {
+            logger.error("Solde insuffisant pour le virement programmé ID={}", virement.getId());
+            settle(virement, VirementStatus.REFUSE, "Solde insuffisant pour effectuer le virement");
+        }
+    }
+
+    /**
+     * Enregistre le résultat d'une échéance dans lastStatus/refusReason. Un ordre permanent n'est
+     * pas clos : il passe à son échéance suivante dans la même ligne, status revient à EN_ATTENTE,
+     * et il est réarmé après le commit.
+     */
+    private void settle(VirementProgramme virement, VirementStatus status, String refusReason) {
+        virement.setRefusReason(refusReason);
+        virement.setLastStatus(status);
+        if (virement.getRecurrenceRule() == null) {
+            virement.setStatus(status);
+            virement.setExecuted(true);
+            virementProgrammeRepository.save(virement);
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        virement.setLastExecutionDate(now);
+        virement.setClaimedBy(null);
+        virement.setClaimedUntil(null);
+        if (StandingOrderSchedule.advance(virement, now)) {
+            virement.setStatus(VirementStatus.EN_ATTENTE);
+            virement.setExecuted(false);
+            VirementProgramme saved = virementProgrammeRepository.save(virement);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    transferTimingWheel.arm(saved.getId(), saved.getDateExecution());
+                }
+            });
+            logger.info("Ordre permanent ID={} : prochaine échéance n°{} le {}", saved.getId(),
+                saved.getOccurrenceIndex(), saved.getDateExecution());
+        } else {
+            virement.setStatus(status);
+            virement.setExecuted(true);
+            virementProgrammeRepository.save(virement);
+            logger.info("Ordre permanent ID={} terminé", virement.getId());
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        for (ExecutorService worker : workers) {
+            worker.shutdown();
+        }
+        for (ExecutorService worker : workers) {
+            worker.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+}
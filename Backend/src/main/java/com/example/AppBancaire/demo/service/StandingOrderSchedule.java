@@ -0,0 +1,107 @@
+package com.example.bank.demo.service;
+
+import com.example.bank.demo.model.VirementProgramme;
+import org.springframework.scheduling.support.CronExpression;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Calcul des échéances des ordres permanents. Les règles DAILY, WEEKLY et MONTHLY comptent
+ * à partir de la première échéance (le 31 reste le 31 quand le mois le permet) ; toute autre
+ * règle est une expression cron Spring à six champs, dont les échéances doivent être espacées
+ * d'au moins {@link #MIN_PERIOD}. Une seule échéance est calculée à la fois : rien n'est
+ * matérialisé à l'avance.
+ */
+public final class StandingOrderSchedule {
+
+    public static final Duration MIN_PERIOD = Duration.ofDays(1);
+
+    // Nombre d'intervalles successifs contrôlés pour une règle cron
+    private static final int CHECKED_INTERVALS = 8;
+
+    private StandingOrderSchedule() {
+    }
+
+    /**
+     * Vérifie la règle ; lève une RuntimeException si elle n'est pas reconnue.
+     */
+    public static String normalize(String rule) {
+        String trimmed = rule.trim();
+        switch (trimmed.toUpperCase()) {
+            case "DAILY", "WEEKLY", "MONTHLY" -> {
+                return trimmed.toUpperCase();
+            }
+            default -> {
+                if (!CronExpression.isValidExpression(trimmed)) {
+                    throw new RuntimeException("Règle de récurrence invalide : " + rule);
+                }
+                requireMinimumPeriod(CronExpression.parse(trimmed), rule);
+                return trimmed;
+            }
+        }
+    }
+
+    /**
+     * Passe l'ordre à sa prochaine échéance postérieure à {@code now} ; les échéances manquées
+     * (application arrêtée) ne sont pas rattrapées. Retourne false quand l'ordre est terminé.
+     */
+    public static boolean advance(VirementProgramme order, LocalDateTime now) {
+        LocalDateTime next;
+        String rule = order.getRecurrenceRule();
+        if (isPeriodic(rule)) {
+            int index = order.getOccurrenceIndex();
+            do {
+                index++;
+                next = occurrence(rule, order.getRecurrenceStart(), index);
+            } while (!next.isAfter(now));
+            order.setOccurrenceIndex(index);
+        } else {
+            LocalDateTime from = order.getDateExecution().isAfter(now) ? order.getDateExecution() : now;
+            next = CronExpression.parse(rule).next(from);
+            order.setOccurrenceIndex(order.getOccurrenceIndex() + 1);
+        }
+        if (next == null || (order.getRecurrenceEnd() != null && next.isAfter(order.getRecurrenceEnd()))) {
+            return false;
+        }
+        order.setDateExecution(next);
+        return true;
+    }
+
+    /**
+     * Première échéance d'une règle cron à partir de {@code start} (incluse à la seconde près).
+     */
+    public static LocalDateTime first(String rule, LocalDateTime start) {
+        return isPeriodic(rule) ? start : CronExpression.parse(rule).next(start.minusSeconds(1));
+    }
+
+    // "* * * * * *" est une expression valide : sans plancher, un ordre pourrait virer chaque seconde
+    private static void requireMinimumPeriod(CronExpression cron, String rule) {
+        LocalDateTime previous = cron.next(LocalDateTime.now());
+        if (previous == null) {
+            throw new RuntimeException("Règle de récurrence sans échéance : " + rule);
+        }
+        for (int i = 0; i < CHECKED_INTERVALS; i++) {
+            LocalDateTime next = cron.next(previous);
+            if (next == null) {
+                return;
+            }
+            if (Duration.between(previous, next).compareTo(MIN_PERIOD) < 0) {
+                throw new RuntimeException("Règle de récurrence trop fréquente (au plus une échéance par jour) : " + rule);
+            }
+            previous = next;
+        }
+    }
+
+    private static boolean isPeriodic(String rule) {
+        return "DAILY".equals(rule) || "WEEKLY".equals(rule) || "MONTHLY".equals(rule);
+    }
+
+    private static LocalDateTime occurrence(String rule, LocalDateTime start, int index) {
+        return switch (rule) {
+            case "DAILY" -> start.plusDays(index);
+            case "WEEKLY" -> start.plusWeeks(index);
+            default -> start.plusMonths(index);
+        };
+    }
+}
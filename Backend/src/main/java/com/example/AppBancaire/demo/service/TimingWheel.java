@@ -0,0 +1,98 @@
+package com.example.bank.demo.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Roue temporelle hiérarchique : {@code wheelSize} cases de {@code tickMillis} chacune, et une roue
+ * plus grossière (cases de wheelSize × tickMillis) créée à la demande pour les échéances plus lointaines.
+ * Les éléments descendent d'une roue à l'autre à mesure que le temps avance et sont rendus par
+ * {@link #advance} au premier tick qui suit leur échéance. Non synchronisée.
+ */
+final class TimingWheel<T> {
+
+    record Entry<T>(T item, long dueMillis) {
+    }
+
+    private final long tickMillis;
+    private final int wheelSize;
+    private final long intervalMillis;
+    private final List<List<Entry<T>>> buckets;
+    private long currentTime;
+    private TimingWheel<T> overflow;
+
+    TimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        this.intervalMillis = tickMillis * wheelSize;
+        this.currentTime = startMillis - Math.floorMod(startMillis, tickMillis);
+        this.buckets = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            buckets.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Place l'élément ; retourne false s'il est déjà échu (à exécuter tout de suite).
+     */
+    boolean add(T item, long dueMillis) {
+        // Arrondi au tick supérieur : un élément n'est jamais rendu avant son échéance
+        long due = dueMillis + Math.floorMod(-dueMillis, tickMillis);
+        return add(new Entry<>(item, due));
+    }
+
+    /**
+     * Avance jusqu'à {@code nowMillis} et retourne les éléments échus, dans l'ordre des ticks.
+     */
+    List<T> advance(long nowMillis) {
+        List<T> due = new ArrayList<>();
+        for (Entry<T> entry : advanceTo(nowMillis)) {
+            due.add(entry.item());
+        }
+        return due;
+    }
+
+    private boolean add(Entry<T> entry) {
+        if (entry.dueMillis() < currentTime + tickMillis) {
+            return false;
+        }
+        if (entry.dueMillis() < currentTime + intervalMillis) {
+            buckets.get(slot(entry.dueMillis())).add(entry);
+            return true;
+        }
+        if (overflow == null) {
+            overflow = new TimingWheel<>(intervalMillis, wheelSize, currentTime);
+        }
+        return overflow.add(entry);
+    }
+
+    // Retourne les entrées devenues trop proches pour cette roue
+    private List<Entry<T>> advanceTo(long nowMillis) {
+        List<Entry<T>> expired = new ArrayList<>();
+        while (currentTime + tickMillis <= nowMillis) {
+            currentTime += tickMillis;
+            if (overflow != null) {
+                for (Entry<T> entry : overflow.advanceTo(currentTime)) {
+                    if (!add(entry)) {
+                        expired.add(entry);
+                    }
+                }
+            }
+            List<Entry<T>> bucket = buckets.get(slot(currentTime));
+            if (!bucket.isEmpty()) {
+                List<Entry<T>> entries = new ArrayList<>(bucket);
+                bucket.clear();
+                for (Entry<T> entry : entries) {
+                    if (!add(entry)) {
+                        expired.add(entry);
+                    }
+                }
+            }
+        }
+        return expired;
+    }
+
+    private int slot(long timeMillis) {
+        return (int) Math.floorMod(timeMillis / tickMillis, (long) wheelSize);
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.bank.demo.service;
+
+import com.example.bank.demo.model.Transaction;
+import com.example.bank.demo.repository.TransactionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Écriture des lignes de transaction selon la politique bank.journal.flush-policy :
+ * <ul>
+ *   <li>PER_TRANSACTION : insertion et flush immédiats de chaque ligne ;</li>
+ *   <li>PER_COMMIT (défaut) : la ligne est mise en file par Hibernate et insérée par lot au commit ;</li>
+ *   <li>GROUP_COMMIT : la ligne est déposée dans un tampon borné au commit de la transaction
+ *       appelante (jamais si elle est annulée), et un writer dédié l'insère par lot toutes les
+ *       bank.journal.group-commit-ms millisecondes.</li>
+ * </ul>
+ * En GROUP_COMMIT, une ligne acceptée n'est pas encore en base au retour de l'appel ni au commit :
+ * un arrêt brutal du nœud dans cet intervalle la perd. Si le tampon est plein, l'écriture redevient
+ * synchrone. Une ligne dont l'insertion échoue est réessayée aux bank.journal.max-retries passages
+ * suivants avant d'être comptée dans bank.journal.lost.
+ * Toute ligne effectivement écrite est reportée dans les agrégats d'agence.
+ */
+@Component
+public class TransactionJournal {
+    private static final Logger logger = LoggerFactory.getLogger(TransactionJournal.class);
+
+    public enum FlushPolicy {
+        PER_TRANSACTION,
+        PER_COMMIT,
+        GROUP_COMMIT
+    }
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private AgencyAggregateService agencyAggregateService;
+
+    @Value("${bank.journal.flush-policy:PER_COMMIT}")
+    private FlushPolicy flushPolicy;
+
+    @Value("${bank.journal.group-commit-ms:10}")
+    private long groupCommitMs;
+
+    @Value("${bank.journal.buffer-size:8192}")
+    private int bufferSize;
+
+    @Value("${bank.journal.max-batch-size:500}")
+    private int maxBatchSize;
+
+    @Value("${bank.journal.max-retries:3}")
+    private int maxRetries;
+
+    private final Timer writeTimer;
+    private final Counter overflowCounter;
+    private final Counter lostCounter;
+
+    private BlockingQueue<Transaction> buffer;
+    // Lignes en échec, réessayées au passage suivant du writer ; accédé par le seul writer
+    private final Map<Transaction, Integer> retries = new LinkedHashMap<>();
+    private ScheduledExecutorService writer;
+
+    public TransactionJournal(MeterRegistry meterRegistry) {
+        this.writeTimer = Timer.builder("bank.journal.write")
+            .description("Temps d'écriture d'une ligne de transaction côté appelant")
+            .register(meterRegistry);
+        this.overflowCounter = Counter.builder("bank.journal.overflow")
+            .description("Lignes écrites de façon synchrone faute de place dans le tampon")
+            .register(meterRegistry);
+        this.lostCounter = Counter.builder("bank.journal.lost")
+            .description("Lignes de transaction abandonnées après bank.journal.max-retries échecs")
+            .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        logger.info("Journal des transactions : politique {}", flushPolicy);
+        if (flushPolicy == FlushPolicy.GROUP_COMMIT) {
+            buffer = new ArrayBlockingQueue<>(bufferSize);
+            writer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "transaction-journal-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            writer.scheduleWithFixedDelay(this::drain, groupCommitMs, groupCommitMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public Transaction append(Transaction transaction) {
+        return writeTimer.record(() -> {
+            switch (flushPolicy) {
+                case PER_TRANSACTION:
+                    return recorded(transactionRepository.saveAndFlush(transaction));
+                case GROUP_COMMIT:
+                    if (buffer.remainingCapacity() == 0) {
+                        overflowCounter.increment();
+                        return recorded(transactionRepository.save(transaction));
+                    }
+                    enqueueAfterCommit(transaction);
+                    return transaction;
+                default:
+                    return recorded(transactionRepository.save(transaction));
+            }
+        });
+    }
+
+    private Transaction recorded(Transaction transaction) {
+        agencyAggregateService.record(transaction);
+        return transaction;
+    }
+
+    // La ligne ne rejoint le tampon qu'une fois le mouvement d'argent validé
+    private void enqueueAfterCommit(Transaction transaction) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            enqueue(transaction);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                enqueue(transaction);
+            }
+        });
+    }
+
+    private void enqueue(Transaction transaction) {
+        if (!buffer.offer(transaction)) {
+            // Tampon rempli depuis l'appel : la transaction appelante est déjà validée
+            overflowCounter.increment();
+            writer.execute(() -> insertOne(transaction));
+        }
+    }
+
+    private void drain() {
+        if (!retries.isEmpty()) {
+            for (Transaction transaction : new ArrayList<>(retries.keySet())) {
+                insertOne(transaction);
+            }
+        }
+        List<Transaction> batch = new ArrayList<>(maxBatchSize);
+        while (buffer.drainTo(batch, maxBatchSize) > 0) {
+            try {
+                transactionRepository.saveAll(batch);
+                agencyAggregateService.recordAll(batch);
+            } catch (Exception e) {
+                // Ne pas perdre le lot : on le réessaie ligne à ligne
+                logger.error("Échec d'écriture d'un lot de {} transactions, nouvel essai ligne à ligne", batch.size(), e);
+                for (Transaction transaction : batch) {
+                    insertOne(transaction);
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    private void insertOne(Transaction transaction) {
+        // L'id alloué par le lot annulé n'existe pas en base : sans remise à null, save() ferait un merge
+        transaction.setId(null);
+        try {
+            recorded(transactionRepository.save(transaction));
+            retries.remove(transaction);
+        } catch (Exception e) {
+            int attempts = retries.getOrDefault(transaction, 0) + 1;
+            if (attempts <= maxRetries) {
+                retries.put(transaction, attempts);
+                logger.warn("Écriture de transaction en échec ({}/{}), nouvel essai au prochain passage",
+                    attempts, maxRetries, e);
+                return;
+            }
+            retries.remove(transaction);
+            lostCounter.increment();
+            logger.error("Transaction perdue : type={}, from={}, to={}, amount={}",
+                transaction.getType(), transaction.getFromAccount(),
+                transaction.getToAccount(), transaction.getAmount(), e);
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (writer != null) {
+            writer.shutdown();
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+            drain();
+        }
+    }
+}
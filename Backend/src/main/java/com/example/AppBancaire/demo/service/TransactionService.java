@@ -1,14 +1,22 @@
 package com.example.bank.demo.service;
 
+import com.example.bank.demo.model.AgencyStatsView;
 import com.example.bank.demo.model.Transaction;
+import com.example.bank.demo.model.TransactionView;
 import com.example.bank.demo.repository.TransactionRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.*;
+import java.util.function.Consumer;
+import java.nio.charset.StandardCharsets;
 import java.util.stream.Collectors;
 import java.util.Calendar;
 import java.util.Date;
@@ -27,61 +35,104 @@ public class TransactionService {
     @Autowired
     private TransactionRepository transactionRepository;
 
-    @Transactional
+    @Autowired
+    private TransactionJournal transactionJournal;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private static final int MAX_PAGE_SIZE = 500;
+
     public Transaction createTransaction(Transaction transaction) {
-        try {
-            logger.info("Creating transaction: amount={}, type={}, from={}, to={}", 
-                transaction.getAmount(), 
-                transaction.getType(),
-                transaction.getFromAccount(),
-                transaction.getToAccount());
-                
-            if (transaction.getDate() == null) {
-                transaction.setDate(new Date());
-            }
-            
-            if (transaction.getStatus() == null) {
-                transaction.setStatus("SUCCESS");
-            }
-            
-            if (transaction.getCategory() != null && transaction.getCategory().getId() == null) {
-                transaction.setCategory(null);
-            }
-            
-            Transaction savedTransaction = transactionRepository.save(transaction);
-            logger.info("Transaction created with ID: {}", savedTransaction.getId());
-            
-            transactionRepository.flush();
-            
-            return savedTransaction;
-        } catch (Exception e) {
-            logger.error("Error creating transaction", e);
-            throw new RuntimeException("Failed to create transaction", e);
+        if (transaction.getDate() == null) {
+            transaction.setDate(new Date());
+        }
+        
+        if (transaction.getStatus() == null) {
+            transaction.setStatus("SUCCESS");
         }
+        
+        if (transaction.getCategory() != null && transaction.getCategory().getId() == null) {
+            transaction.setCategory(null);
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Creating transaction: amount={}, type={}, from={}, to={}",
+                transaction.getAmount(), transaction.getType(), transaction.getFromAccount(), transaction.getToAccount());
+        }
+
+        return transactionJournal.append(transaction);
+    }
+
+    @Transactional(readOnly = true)
+    public List<TransactionView> getTransactionsByAccountId(Long accountId) {
+        // Déjà triées par date décroissante par la requête
+        return transactionRepository.findViewsByAccountId(accountId);
+    }
+
+    /**
+     * Page de l'historique d'un compte, du plus récent au plus ancien.
+     * {@code cursor} est le nextCursor de la page précédente, ou null pour la première page.
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> getTransactionPage(Long accountId, String cursor, int limit) {
+        Slice<Transaction> slice = findSlice(accountId, cursor, Math.max(1, Math.min(limit, MAX_PAGE_SIZE)));
+
+        Map<String, Object> page = new HashMap<>();
+        page.put("transactions", slice.getContent().stream().map(TransactionView::of).collect(Collectors.toList()));
+        page.put("hasMore", slice.hasNext());
+        page.put("nextCursor", slice.hasNext() ? encodeCursor(slice.getContent().get(slice.getNumberOfElements() - 1)) : null);
+        return page;
     }
 
+    /**
+     * Parcourt tout l'historique d'un compte par pages de {@code chunkSize} lignes.
+     * Le contexte de persistance est vidé entre deux pages pour garder une mémoire constante.
+     * Une seule transaction en lecture seule (pool de lecture) couvre tout le parcours.
+     */
     @Transactional(readOnly = true)
-    public List<Transaction> getTransactionsByAccountId(Long accountId) {
-        logger.info("Fetching transactions for account: {}", accountId);
+    public void streamTransactionsByAccountId(Long accountId, int chunkSize, Consumer<List<Transaction>> chunkConsumer) {
+        String cursor = null;
+        while (true) {
+            Slice<Transaction> slice = findSlice(accountId, cursor, chunkSize);
+            chunkConsumer.accept(slice.getContent());
+            if (!slice.hasNext()) {
+                return;
+            }
+            cursor = encodeCursor(slice.getContent().get(slice.getNumberOfElements() - 1));
+            entityManager.clear();
+        }
+    }
+
+    private Slice<Transaction> findSlice(Long accountId, String cursor, int limit) {
+        PageRequest pageRequest = PageRequest.of(0, limit);
+        if (cursor == null || cursor.isEmpty()) {
+            return transactionRepository.findByAccountIdOrderByDateDescIdDesc(accountId, pageRequest);
+        }
         try {
-            List<Transaction> transactions = transactionRepository.findByAccountIdOrderByDateDesc(accountId);
-            logger.info("Found {} transactions", transactions.size());
-            
-            // Trier les transactions par date décroissante
-            transactions.sort((t1, t2) -> t2.getDate().compareTo(t1.getDate()));
-            
-            return transactions;
-        } catch (Exception e) {
-            logger.error("Error fetching transactions for account: {}", accountId, e);
-            throw new RuntimeException("Failed to fetch transactions", e);
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":", 2);
+            return transactionRepository.findByAccountIdBefore(
+                accountId, new Date(Long.parseLong(parts[0])), Long.parseLong(parts[1]), pageRequest);
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new RuntimeException("Curseur invalide");
         }
     }
 
+    private String encodeCursor(Transaction last) {
+        String raw = last.getDate().getTime() + ":" + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
     @Transactional(readOnly = true)
     public List<Transaction> getTransactionsByUserId(Long userId) {
         return transactionRepository.findByAccount_UserIdOrderByDateDesc(userId);
     }
 
+    @Transactional(readOnly = true)
+    public List<TransactionView> getTransactionViewsByUserId(Long userId) {
+        return transactionRepository.findViewsByUserId(userId);
+    }
+
     @Transactional(readOnly = true)
     public List<Transaction> getRecentTransactionsByUserId(Long userId) {
         logger.info("Fetching recent transactions for user: {}", userId);
@@ -146,38 +197,42 @@ public class TransactionService {
     }
 
     @Transactional(readOnly = true)
-    public List<Transaction> getAllTransactions() {
+    public List<TransactionView> getAllTransactions() {
         try {
             // Récupérer uniquement les transactions de type virement, retrait et dépôt
-            List<Transaction> transactions = transactionRepository.findAllOrderByDateDesc();
-            List<Transaction> filteredTransactions = transactions.stream()
-                .filter(t -> 
-                    "CREDIT".equals(t.getType()) || 
-                    "DEBIT".equals(t.getType()) || 
-                    "DEPOSIT".equals(t.getType()) || 
-                    "WITHDRAW".equals(t.getType())
-                )
-                .collect(Collectors.toList());
-                
-            logger.info("Found {} filtered transactions", filteredTransactions.size());
-            return filteredTransactions;
+            List<TransactionView> transactions = transactionRepository.findAllOrderByDateDesc();
+            logger.info("Found {} filtered transactions", transactions.size());
+            return transactions;
         } catch (Exception e) {
             logger.error("Error fetching transactions", e);
             throw new RuntimeException("Failed to fetch transactions", e);
         }
     }
 
+    @Transactional(readOnly = true)
+    public long countAllTransactions() {
+        return transactionRepository.countAllOperations();
+    }
+
+    @Transactional(readOnly = true)
     public List<Transaction> getTransactionsAfterDate(LocalDateTime date) {
-        return transactionRepository.findAll().stream()
-            .filter(t -> t.getDate().toInstant()
-                .atZone(ZoneId.systemDefault())
-                .toLocalDateTime()
-                .isAfter(date))
-            .collect(Collectors.toList());
+        return transactionRepository.findByDateAfterOrderByDateDesc(
+            Date.from(date.atZone(ZoneId.systemDefault()).toInstant()));
+    }
+
+    /**
+     * Nombres et montants par type des transactions postérieures à {@code date},
+     * toutes agences confondues (agencyId null), sans charger les lignes.
+     */
+    @Transactional(readOnly = true)
+    public AgencyStatsView getTransactionStatsAfterDate(LocalDateTime date) {
+        return AgencyStatsView.fromTypeTotals(null, transactionRepository.sumByTypeAfterDate(
+            Date.from(date.atZone(ZoneId.systemDefault()).toInstant())));
     }
 
-    public List<Transaction> getTransactionsByAgencyId(Long agencyId) {
-        return transactionRepository.findTransactionsByAgencyId(agencyId);
+    @Transactional(readOnly = true)
+    public List<TransactionView> getTransactionsByAgencyId(Long agencyId) {
+        return transactionRepository.findViewsByAgencyId(agencyId);
     }
 
     @Transactional
@@ -195,61 +250,31 @@ public class TransactionService {
         return transactionRepository.findByAgencyIdAndDateBetween(agencyId, startDateAsDate, endDateAsDate);
     }
 
-    public Map<String, Object> getAgencyStatsByDateRange(
+    @Transactional(readOnly = true)
+    public AgencyStatsView getAgencyStatsByDateRange(
         Long agencyId, 
         Date startDate,
         Date endDate
     ) {
         logger.info("Getting stats for agency {} from {} to {}", agencyId, startDate, endDate);
-        
-        Map<String, Object> stats = new HashMap<>();
-        
-        try {
-            // Nombre total de transactions
-            Long transactionCount = transactionRepository.countTransactionsByAgencyAndDateRange(
-                agencyId, startDate, endDate
-            );
-            logger.info("Found {} transactions", transactionCount);
-            
-            // Somme des dépôts
-            Double deposits = transactionRepository.sumAmountByTypeAndDateRange(
-                agencyId, "DEPOSIT", startDate, endDate
-            );
-            logger.info("Total deposits: {}", deposits);
-            
-            // Somme des retraits
-            Double withdrawals = transactionRepository.sumAmountByTypeAndDateRange(
-                agencyId, "WITHDRAW", startDate, endDate
-            );
-            logger.info("Total withdrawals: {}", withdrawals);
-            
-            // Somme des virements émis
-            Double transfersOut = transactionRepository.sumAmountByTypeAndDateRange(
-                agencyId, "DEBIT", startDate, endDate
-            );
-            logger.info("Total transfers out: {}", transfersOut);
-            
-            // Somme des virements reçus
-            Double transfersIn = transactionRepository.sumAmountByTypeAndDateRange(
-                agencyId, "CREDIT", startDate, endDate
-            );
-            logger.info("Total transfers in: {}", transfersIn);
-
-            stats.put("transactionCount", transactionCount);
-            stats.put("deposits", deposits != null ? deposits : 0.0);
-            stats.put("withdrawals", withdrawals != null ? withdrawals : 0.0);
-            stats.put("transfersOut", transfersOut != null ? transfersOut : 0.0);
-            stats.put("transfersIn", transfersIn != null ? transfersIn : 0.0);
-            stats.put("totalAmount", (deposits != null ? deposits : 0.0) + 
-                                    (transfersIn != null ? transfersIn : 0.0) -
-                                    (withdrawals != null ? withdrawals : 0.0) -
-                                    (transfersOut != null ? transfersOut : 0.0));
-            
-            logger.info("Final stats: {}", stats);
-            return stats;
-        } catch (Exception e) {
-            logger.error("Error calculating stats:", e);
-            throw e;
+        AgencyStatsView stats = AgencyStatsView.fromTypeTotals(agencyId,
+            transactionRepository.sumByTypeForAgencyAndDateRange(agencyId, startDate, endDate));
+        logger.info("Final stats: {}", stats);
+        return stats;
+    }
+
+    /**
+     * Statistiques de toutes les agences sur la période, en une seule requête.
+     */
+    @Transactional(readOnly = true)
+    public List<AgencyStatsView> getAllAgenciesStatsByDateRange(Date startDate, Date endDate) {
+        Map<Long, List<Object[]>> rowsByAgency = new LinkedHashMap<>();
+        for (Object[] row : transactionRepository.sumByAgencyAndTypeForDateRange(startDate, endDate)) {
+            rowsByAgency.computeIfAbsent((Long) row[0], id -> new ArrayList<>())
+                .add(new Object[] { row[1], row[2], row[3] });
         }
+        return rowsByAgency.entrySet().stream()
+            .map(entry -> AgencyStatsView.fromTypeTotals(entry.getKey(), entry.getValue()))
+            .collect(Collectors.toList());
     }
 } 
\ No newline at end of file
@@ -0,0 +1,115 @@
+package com.example.bank.demo.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Renseigne leg et transfer_id sur les transactions créées avant leur introduction.
+ * Les jambes crédit sont rattachées à leur jambe débit sur (from, to, montant) à une
+ * seconde près. Traitement par tranches d'ids, en arrière-plan, et rejouable sans effet :
+ * seules les lignes encore à NULL sont modifiées. L'appariement s'appuie sur l'index
+ * temporaire idx_transaction_pair, créé au début et supprimé une fois le backfill terminé.
+ */
+@Service
+public class TransferIdBackfillService {
+    private static final Logger logger = LoggerFactory.getLogger(TransferIdBackfillService.class);
+    private static final String PAIR_INDEX = "idx_transaction_pair";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ScheduledExecutorService scheduledExecutorService;
+
+    @Value("${bank.transaction.backfill.enabled:true}")
+    private boolean enabled;
+
+    @Value("${bank.transaction.backfill.chunk-size:5000}")
+    private int chunkSize;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void scheduleBackfill() {
+        if (enabled) {
+            scheduledExecutorService.execute(this::backfill);
+        }
+    }
+
+    public void backfill() {
+        try {
+            Long pending = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM transaction WHERE leg IS NULL", Long.class);
+            if (pending == null || pending == 0) {
+                dropPairIndex();
+                return;
+            }
+            logger.info("Backfill leg/transfer_id : {} transactions à traiter", pending);
+            createPairIndex();
+
+            Long minId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM transaction WHERE leg IS NULL", Long.class);
+            Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM transaction WHERE leg IS NULL", Long.class);
+            int updated = 0;
+            for (long from = minId; from <= maxId; from += chunkSize) {
+                updated += backfillChunk(from, from + chunkSize - 1);
+            }
+            logger.info("Backfill leg/transfer_id terminé : {} lignes mises à jour", updated);
+            dropPairIndex();
+        } catch (Exception e) {
+            logger.error("Backfill leg/transfer_id interrompu, il reprendra au prochain démarrage", e);
+        }
+    }
+
+    // Sans cet index, chaque crédit de la tranche parcourt toute la table pour trouver son débit
+    private void createPairIndex() {
+        if (!pairIndexExists()) {
+            logger.info("Création de l'index temporaire {}", PAIR_INDEX);
+            jdbcTemplate.execute("CREATE INDEX " + PAIR_INDEX + " ON transaction (from_account, to_account, amount, date)");
+        }
+    }
+
+    private void dropPairIndex() {
+        if (pairIndexExists()) {
+            logger.info("Suppression de l'index temporaire {}", PAIR_INDEX);
+            jdbcTemplate.execute("DROP INDEX " + PAIR_INDEX + " ON transaction");
+        }
+    }
+
+    private boolean pairIndexExists() {
+        Long count = jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM information_schema.statistics " +
+            "WHERE table_schema = DATABASE() AND table_name = 'transaction' AND index_name = ?",
+            Long.class, PAIR_INDEX);
+        return count != null && count > 0;
+    }
+
+    private int backfillChunk(long fromId, long toId) {
+        // 1. Un identifiant de virement pour chaque débit
+        int updated = jdbcTemplate.update(
+            "UPDATE transaction SET transfer_id = UUID() " +
+            "WHERE id BETWEEN ? AND ? AND type = 'DEBIT' AND transfer_id IS NULL",
+            fromId, toId);
+
+        // 2. Chaque crédit reprend l'identifiant du débit correspondant
+        updated += jdbcTemplate.update(
+            "UPDATE transaction c JOIN transaction d " +
+            "  ON d.type = 'DEBIT' AND d.from_account = c.from_account AND d.to_account = c.to_account " +
+            "  AND d.amount = c.amount AND d.date BETWEEN c.date - INTERVAL 1 SECOND AND c.date + INTERVAL 1 SECOND " +
+            "SET c.transfer_id = d.transfer_id " +
+            "WHERE c.id BETWEEN ? AND ? AND c.type = 'CREDIT' AND c.transfer_id IS NULL AND d.transfer_id IS NOT NULL",
+            fromId, toId);
+
+        // 3. Le rôle de la ligne en dernier : leg IS NULL marque les tranches restant à traiter
+        updated += jdbcTemplate.update(
+            "UPDATE transaction SET leg = CASE WHEN type = 'CREDIT' THEN 'MIRROR' ELSE 'PRIMARY' END " +
+            "WHERE id BETWEEN ? AND ? AND leg IS NULL",
+            fromId, toId);
+        return updated;
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.bank.demo.service;
+
+import com.example.bank.demo.repository.VirementProgrammeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Déclenche les virements programmés à la seconde près (bank.virement.wheel.enabled).
+ * Les virements des bank.virement.wheel.horizon-minutes prochaines minutes sont chargés
+ * par l'index (executed, dateExecution) dans une {@link TimingWheel} qui avance chaque seconde
+ * sur le ScheduledExecutorService de AsyncConfig ; le chargement suivant reprend là où le
+ * précédent s'est arrêté. Les virements programmés ou annulés dans l'horizon déjà chargé
+ * sont armés ou désarmés directement. Le balayage périodique de {@link ScheduledTransferExecutor}
+ * reste le filet de sécurité (redémarrage, autre nœud).
+ */
+@Component
+public class TransferTimingWheel {
+    private static final Logger logger = LoggerFactory.getLogger(TransferTimingWheel.class);
+    private static final long TICK_MILLIS = 1000;
+
+    @Autowired
+    private VirementProgrammeRepository virementProgrammeRepository;
+
+    @Autowired
+    private ScheduledTransferExecutor scheduledTransferExecutor;
+
+    @Autowired
+    private ScheduledExecutorService scheduledExecutorService;
+
+    @Value("${bank.virement.wheel.enabled:true}")
+    private boolean enabled;
+
+    @Value("${bank.virement.wheel.horizon-minutes:10}")
+    private long horizonMinutes;
+
+    // Virements armés : id → échéance en ms ; un virement désarmé est ignoré quand sa case arrive
+    private final Map<Long, Long> armed = new ConcurrentHashMap<>();
+    private volatile TimingWheel<Long> wheel;
+    private volatile long loadedUntil = Long.MIN_VALUE;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            wheel = new TimingWheel<>(TICK_MILLIS, 60, now);
+        }
+        long reloadMillis = TimeUnit.MINUTES.toMillis(horizonMinutes) / 2;
+        scheduledExecutorService.scheduleWithFixedDelay(this::load, 0, reloadMillis, TimeUnit.MILLISECONDS);
+        scheduledExecutorService.scheduleAtFixedRate(this::tick, TICK_MILLIS - now % TICK_MILLIS, TICK_MILLIS,
+            TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Arme un virement programmé ; sans effet s'il tombe au-delà de l'horizon déjà chargé.
+     */
+    public void arm(Long virementId, LocalDateTime dateExecution) {
+        long due = toMillis(dateExecution);
+        if (wheel == null || due > loadedUntil) {
+            return;
+        }
+        armed.put(virementId, due);
+        boolean placed;
+        synchronized (this) {
+            placed = wheel.add(virementId, due);
+        }
+        if (!placed) {
+            fire(List.of(virementId));
+        }
+    }
+
+    public void disarm(Long virementId) {
+        armed.remove(virementId);
+    }
+
+    private void load() {
+        try {
+            long until = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(horizonMinutes);
+            // Premier chargement : tous les virements en attente, y compris ceux en retard
+            LocalDateTime from = loadedUntil == Long.MIN_VALUE ? LocalDateTime.of(1970, 1, 1, 0, 0) : toDate(loadedUntil);
+            List<Object[]> rows = virementProgrammeRepository.findPendingBetween(from, toDate(until));
+            loadedUntil = until;
+            for (Object[] row : rows) {
+                arm((Long) row[0], (LocalDateTime) row[1]);
+            }
+            if (!rows.isEmpty()) {
+                logger.info("{} virements programmés armés jusqu'à {}", rows.size(), until);
+            }
+        } catch (Exception e) {
+            logger.error("Chargement des virements programmés impossible", e);
+        }
+    }
+
+    private void tick() {
+        try {
+            List<Long> due;
+            synchronized (this) {
+                due = wheel.advance(System.currentTimeMillis());
+            }
+            fire(due);
+        } catch (Exception e) {
+            // Ne pas laisser une exception arrêter la roue ; le balayage périodique rattrapera
+            logger.error("Déclenchement des virements programmés impossible", e);
+        }
+    }
+
+    private void fire(List<Long> due) {
+        List<Long> toRun = new ArrayList<>(due.size());
+        for (Long virementId : due) {
+            if (armed.remove(virementId) != null) {
+                toRun.add(virementId);
+            }
+        }
+        if (!toRun.isEmpty()) {
+            scheduledTransferExecutor.runTransfers(toRun);
+        }
+    }
+
+    private static LocalDateTime toDate(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+
+    private static long toMillis(LocalDateTime date) {
+        return date.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -8,20 +8,29 @@ import com.example.bank.demo.repository.AccountRepository;
 import com.example.bank.demo.repository.CashierLogRepository;
 import com.example.bank.demo.repository.AgencyRepository;
 import com.example.bank.demo.model.Agency;
+import com.example.bank.demo.security.CredentialCache;
+import com.example.bank.demo.security.PrincipalCache;
+import com.example.bank.demo.security.SessionTokenService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import jakarta.annotation.PostConstruct;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import org.springframework.transaction.annotation.Transactional;
-import java.util.stream.Collectors;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 @Service
 public class UserService {
     
     private static final Logger logger = LoggerFactory.getLogger(UserService.class);
+    private static final int MAX_PAGE_SIZE = 500;
     
     @Autowired
     private UserRepository userRepository;
@@ -44,6 +53,15 @@ public class UserService {
     @Autowired
     private AgencyRepository agencyRepository;
 
+    @Autowired
+    private CredentialCache credentialCache;
+
+    @Autowired
+    private SessionTokenService sessionTokenService;
+
+    @Autowired
+    private PrincipalCache principalCache;
+
     @Transactional
     public User createUser(User user) {
         if (userRepository.existsByUsername(user.getUsername())) {
@@ -61,6 +79,11 @@ public class UserService {
         return userRepository.save(user);
     }
 
+    /**
+     * Liste complète de l'écran d'administration (/api/admin/users) : seul findAll() non paginé
+     * restant sur users, signalé en prod par UnboundedQueryGuard (refusé avec
+     * bank.guard.unbounded-find-all=REJECT). Les autres appelants passent par getUserPage ou un comptage.
+     */
     public List<User> getAllUsers() {
         logger.info("Getting all users");
         try {
@@ -73,6 +96,25 @@ public class UserService {
         }
     }
 
+    /**
+     * Page des utilisateurs par id croissant.
+     * {@code afterId} est le nextCursor de la page précédente, ou null pour la première page.
+     */
+    public Map<String, Object> getUserPage(Long afterId, int limit) {
+        Slice<User> slice = userRepository.findByIdGreaterThanOrderByIdAsc(
+            afterId != null ? afterId : 0L, PageRequest.of(0, Math.max(1, Math.min(limit, MAX_PAGE_SIZE))));
+
+        Map<String, Object> page = new HashMap<>();
+        page.put("users", slice.getContent());
+        page.put("hasMore", slice.hasNext());
+        page.put("nextCursor", slice.hasNext() ? slice.getContent().get(slice.getNumberOfElements() - 1).getId() : null);
+        return page;
+    }
+
+    public long countUsers() {
+        return userRepository.count();
+    }
+
     public User getUserById(Long id) {
         return userRepository.findById(id)
             .orElseThrow(() -> new RuntimeException("User not found"));
@@ -82,7 +124,9 @@ public class UserService {
         User user = getUserById(id);
         user.setEmail(userDetails.getEmail());
         user.setFullName(userDetails.getFullName());
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        evictPrincipal(user.getUsername());
+        return saved;
     }
 
     @Transactional
@@ -107,13 +151,14 @@ public class UserService {
         
         // Supprimer l'utilisateur
         userRepository.deleteById(id);
+        invalidateCredentials(user);
     }
 
     public User authenticate(String username, String password) {
         logger.info("Attempting to authenticate user: {}", username);
         try {
             return userRepository.findByUsername(username)
-                .filter(user -> passwordEncoder.matches(password, user.getPassword()))
+                .filter(user -> credentialCache.matches(username, password, user.getPassword()))
                 .orElse(null);
         } catch (Exception e) {
             logger.error("Error during authentication", e);
@@ -122,14 +167,14 @@ public class UserService {
     }
 
     public boolean isAdmin(String username) {
-        return userRepository.findByUsername(username)
-            .map(user -> "ROLE_ADMIN".equals(user.getRole()))
+        return principalCache.get(username)
+            .map(principal -> principal.hasRole("ROLE_ADMIN"))
             .orElse(false);
     }
 
     public boolean isCashier(String username) {
-        return userRepository.findByUsername(username)
-            .map(user -> "ROLE_CASHIER".equals(user.getRole()))
+        return principalCache.get(username)
+            .map(principal -> principal.hasRole("ROLE_CASHIER"))
             .orElse(false);
     }
 
@@ -168,7 +213,7 @@ public class UserService {
 
     public boolean verifyPassword(Long userId, String password) {
         User user = getUserById(userId);
-        return passwordEncoder.matches(password, user.getPassword());
+        return credentialCache.matches(user.getUsername(), password, user.getPassword());
     }
 
     public String encodePassword(String rawPassword) {
@@ -191,6 +236,7 @@ public class UserService {
 
             // Sauvegarder les modifications
             User updatedUser = userRepository.save(existingUser);
+            evictPrincipal(existingUser.getUsername());
             logger.info("User information updated successfully");
             return updatedUser;
         } catch (Exception e) {
@@ -199,6 +245,13 @@ public class UserService {
         }
     }
 
+    /**
+     * Référence vers l'utilisateur sans le charger, pour les associations (journal caissier).
+     */
+    public User getReference(Long id) {
+        return userRepository.getReferenceById(id);
+    }
+
     public boolean existsByUsername(String username) {
         return userRepository.existsByUsername(username);
     }
@@ -213,32 +266,33 @@ public class UserService {
 
     public boolean verifyPassword(String username, String password) {
         return userRepository.findByUsername(username)
-            .map(user -> passwordEncoder.matches(password, user.getPassword()))
+            .map(user -> credentialCache.matches(username, password, user.getPassword()))
             .orElse(false);
     }
 
     public boolean isDirector(String username) {
-        return userRepository.findByUsername(username)
-            .map(user -> "ROLE_DIRECTOR".equals(user.getRole()))
+        return principalCache.get(username)
+            .map(principal -> principal.hasRole("ROLE_DIRECTOR"))
             .orElse(false);
     }
 
     public List<User> getStaffMembers() {
-        return userRepository.findAll().stream()
-            .filter(user -> "ROLE_CASHIER".equals(user.getRole()))
-            .collect(Collectors.toList());
+        return userRepository.findByRole("ROLE_CASHIER");
     }
 
     public List<User> getClients() {
-        return userRepository.findAll().stream()
-            .filter(user -> "ROLE_USER".equals(user.getRole()))
-            .collect(Collectors.toList());
+        return userRepository.findByRole("ROLE_USER");
+    }
+
+    public long countClients() {
+        return userRepository.countByRole("ROLE_USER");
     }
 
     @Transactional
     public User updateUserAsAdmin(Long id, User userDetails) {
         User user = getUserById(id);
-        
+        invalidateCredentials(user);
+
         user.setUsername(userDetails.getUsername());
         user.setEmail(userDetails.getEmail());
         user.setFullName(userDetails.getFullName());
@@ -249,8 +303,10 @@ public class UserService {
         if (userDetails.getPassword() != null && !userDetails.getPassword().isEmpty()) {
             user.setPassword(passwordEncoder.encode(userDetails.getPassword()));
         }
-        
-        return userRepository.save(user);
+
+        User saved = userRepository.save(user);
+        evictPrincipal(saved.getUsername());
+        return saved;
     }
 
     public List<User> getCashiersByAgencyId(Long agencyId) {
@@ -289,8 +345,41 @@ public class UserService {
         // Mettre à jour le mot de passe si fourni
         if (cashierDetails.getPassword() != null && !cashierDetails.getPassword().isEmpty()) {
             existingCashier.setPassword(passwordEncoder.encode(cashierDetails.getPassword()));
+            invalidateCredentials(existingCashier);
         }
-        
-        return userRepository.save(existingCashier);
+
+        User saved = userRepository.save(existingCashier);
+        evictPrincipal(existingCashier.getUsername());
+        return saved;
+    }
+
+    // Révoque les jetons de session de l'utilisateur (en base pour tous les nœuds, et tout de suite
+    // sur celui-ci), puis oublie après le commit l'utilisateur en cache et ses mots de passe vérifiés
+    private void invalidateCredentials(User user) {
+        String username = user.getUsername();
+        user.setCredentialsChangedAt(System.currentTimeMillis());
+        sessionTokenService.revoke(username);
+        afterCommit(() -> {
+            principalCache.evict(username);
+            credentialCache.invalidate(username);
+        });
+    }
+
+    private void evictPrincipal(String username) {
+        afterCommit(() -> principalCache.evict(username));
+    }
+
+    // Une éviction avant le commit laisserait une requête concurrente remettre l'ancien état en cache
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
     }
-} 
\ No newline at end of file
+}
@@ -10,6 +10,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -23,7 +25,10 @@ public class VirementProgrammeService {
     private VirementProgrammeRepository virementProgrammeRepository;
     
     @Autowired
-    private AccountService accountService;
+    private ScheduledTransferExecutor scheduledTransferExecutor;
+
+    @Autowired
+    private TransferTimingWheel transferTimingWheel;
 
     @Transactional
     public VirementProgramme programmerVirement(Account compteSource, 
@@ -31,7 +36,23 @@ public class VirementProgrammeService {
                                               String beneficiaireName,
                                               Double montant,
                                               LocalDateTime dateExecution) {
-        logger.info("Programmation d'un virement : montant={}, date={}", montant, dateExecution);
+        return programmerVirement(compteSource, numeroCompteDestination, beneficiaireName, montant,
+            dateExecution, null, null);
+    }
+
+    /**
+     * Programme un virement unique ({@code recurrence} null) ou un ordre permanent, exécuté à
+     * chaque échéance de la règle à partir de {@code dateExecution} jusqu'à {@code finRecurrence}.
+     */
+    @Transactional
+    public VirementProgramme programmerVirement(Account compteSource,
+                                              String numeroCompteDestination,
+                                              String beneficiaireName,
+                                              Double montant,
+                                              LocalDateTime dateExecution,
+                                              String recurrence,
+                                              LocalDateTime finRecurrence) {
+        logger.info("Programmation d'un virement : montant={}, date={}, récurrence={}", montant, dateExecution, recurrence);
         
         // Vérifier que la date d'exécution est dans le futur
         if (dateExecution.isBefore(LocalDateTime.now())) {
@@ -46,63 +67,35 @@ public class VirementProgrammeService {
         virement.setDateExecution(dateExecution);
         virement.setExecuted(false);
         virement.setStatus(VirementStatus.EN_ATTENTE);
+
+        if (recurrence != null && !recurrence.isBlank()) {
+            String rule = StandingOrderSchedule.normalize(recurrence);
+            LocalDateTime premiereEcheance = StandingOrderSchedule.first(rule, dateExecution);
+            if (premiereEcheance == null || (finRecurrence != null && premiereEcheance.isAfter(finRecurrence))) {
+                throw new RuntimeException("Aucune échéance avant la fin de la récurrence");
+            }
+            virement.setRecurrenceRule(rule);
+            virement.setRecurrenceStart(premiereEcheance);
+            virement.setRecurrenceEnd(finRecurrence);
+            virement.setDateExecution(premiereEcheance);
+        }
         
-        return virementProgrammeRepository.save(virement);
+        VirementProgramme saved = virementProgrammeRepository.save(virement);
+        // Armer après le commit : avant, le virement n'est pas visible de l'exécuteur
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                transferTimingWheel.arm(saved.getId(), saved.getDateExecution());
+            }
+        });
+        return saved;
     }
 
-    @Scheduled(fixedRate = 60000) // Vérifie toutes les minutes
-    @Transactional
+    // Filet de sécurité : les virements à l'heure sont déclenchés par TransferTimingWheel
+    @Scheduled(fixedRateString = "${bank.virement.poll-ms:300000}")
     public void executeVirementsEchus() {
         logger.info("Vérification des virements programmés à exécuter");
-        LocalDateTime now = LocalDateTime.now();
-        List<VirementProgramme> virementsAExecuter = 
-            virementProgrammeRepository.findByDateExecutionBeforeAndExecutedFalse(now);
-
-        logger.info("Nombre de virements à exécuter : {}", virementsAExecuter.size());
-
-        for (VirementProgramme virement : virementsAExecuter) {
-            try {
-                logger.info("Exécution du virement programmé ID={}", virement.getId());
-                
-                // Exécuter le virement directement sans vérification de mot de passe
-                Account sourceAccount = virement.getCompteSource();
-                if (sourceAccount.getBalance() >= virement.getMontant()) {
-                    sourceAccount.setBalance(sourceAccount.getBalance() - virement.getMontant());
-                    
-                    // Trouver le compte destinataire
-                    Account destinationAccount = accountService.findByAccountNumber(virement.getNumeroCompteDestination())
-                        .orElseThrow(() -> new RuntimeException("Compte destinataire non trouvé"));
-                    
-                    destinationAccount.setBalance(destinationAccount.getBalance() + virement.getMontant());
-                    
-                    // Créer les transactions
-                    accountService.createTransactionPair(
-                        sourceAccount,
-                        destinationAccount,
-                        virement.getMontant(),
-                        "Virement programmé"
-                    );
-                    
-                    virement.setExecuted(true);
-                    virement.setStatus(VirementStatus.EXECUTE);
-                    virementProgrammeRepository.save(virement);
-                    
-                    logger.info("Virement programmé ID={} exécuté avec succès", virement.getId());
-                } else {
-                    virement.setStatus(VirementStatus.REFUSE);
-                    virement.setRefusReason("Solde insuffisant pour effectuer le virement");
-                    logger.error("Solde insuffisant pour le virement programmé ID={}", virement.getId());
-                }
-                virement.setExecuted(true);
-                virementProgrammeRepository.save(virement);
-            } catch (Exception e) {
-                virement.setStatus(VirementStatus.REFUSE);
-                virement.setRefusReason("Erreur technique : " + e.getMessage());
-                virement.setExecuted(true);
-                virementProgrammeRepository.save(virement);
-                logger.error("Erreur lors de l'exécution du virement programmé ID=" + virement.getId(), e);
-            }
-        }
+        scheduledTransferExecutor.runDueTransfers();
     }
 
     public List<VirementProgramme> getVirementsProgrammes(Long userId) {
@@ -112,7 +105,8 @@ public class VirementProgrammeService {
 
     @Transactional
     public void annulerVirement(Long virementId, Long userId) {
-        VirementProgramme virement = virementProgrammeRepository.findById(virementId)
+        // Verrou de ligne : un nœud ne peut pas réclamer le virement entre la vérification et la suppression
+        VirementProgramme virement = virementProgrammeRepository.findByIdForUpdate(virementId)
             .orElseThrow(() -> new RuntimeException("Virement programmé non trouvé"));
 
         // Vérifier que le virement appartient à l'utilisateur
@@ -125,7 +119,18 @@ public class VirementProgrammeService {
             throw new RuntimeException("Ce virement ne peut plus être annulé");
         }
 
-        // Supprimer le virement
+        // Vérifier qu'aucun nœud n'est en train de l'exécuter
+        if (virement.getClaimedUntil() != null && virement.getClaimedUntil().isAfter(LocalDateTime.now())) {
+            throw new RuntimeException("Ce virement est en cours d'exécution");
+        }
+
+        // Supprimer le virement ; le désarmer seulement si la suppression est validée
         virementProgrammeRepository.delete(virement);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                transferTimingWheel.disarm(virementId);
+            }
+        });
     }
 } 
\ No newline at end of file
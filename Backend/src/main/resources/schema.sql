@@ -1,3 +1,39 @@
+-- Schéma de référence de la base MySQL.
+-- Ce fichier n'est pas exécuté par Spring Boot (spring.sql.init.mode vaut embedded par défaut) :
+-- au démarrage, Hibernate (ddl-auto=update) crée tables, colonnes et index @Index, et
+-- IdSequenceInitializer aligne transaction_seq. Il s'applique à la main avec le client mysql
+-- (les procédures utilisent DELIMITER), sur une base vide ou existante, et peut être rejoué :
+--   mysql -u <utilisateur> -p mabasededonnees < Backend/src/main/resources/schema.sql
+-- MySQL 8 ne connaît ni ADD COLUMN IF NOT EXISTS ni CREATE INDEX IF NOT EXISTS : colonnes et
+-- index passent par bank_add_column / bank_add_index, qui consultent information_schema.
+-- Les clés étrangères croisées (users <-> agencies) imposent de désactiver leur contrôle.
+SET FOREIGN_KEY_CHECKS = 0;
+
+DROP PROCEDURE IF EXISTS bank_add_column;
+DROP PROCEDURE IF EXISTS bank_add_index;
+DELIMITER //
+CREATE PROCEDURE bank_add_column(IN tbl VARCHAR(64), IN col VARCHAR(64), IN definition VARCHAR(255))
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM information_schema.columns
+                   WHERE table_schema = DATABASE() AND table_name = tbl AND column_name = col) THEN
+        SET @bank_ddl = CONCAT('ALTER TABLE `', tbl, '` ADD COLUMN `', col, '` ', definition);
+        PREPARE bank_stmt FROM @bank_ddl;
+        EXECUTE bank_stmt;
+        DEALLOCATE PREPARE bank_stmt;
+    END IF;
+END //
+CREATE PROCEDURE bank_add_index(IN tbl VARCHAR(64), IN idx VARCHAR(64), IN cols VARCHAR(255))
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM information_schema.statistics
+                   WHERE table_schema = DATABASE() AND table_name = tbl AND index_name = idx) THEN
+        SET @bank_ddl = CONCAT('CREATE INDEX `', idx, '` ON `', tbl, '` (', cols, ')');
+        PREPARE bank_stmt FROM @bank_ddl;
+        EXECUTE bank_stmt;
+        DEALLOCATE PREPARE bank_stmt;
+    END IF;
+END //
+DELIMITER ;
+
 -- Création de la table users
 CREATE TABLE IF NOT EXISTS users (
     id BIGINT AUTO_INCREMENT PRIMARY KEY,
@@ -43,10 +79,8 @@ CREATE TABLE IF NOT EXISTS transaction (
     FOREIGN KEY (category_id) REFERENCES expense_category(id)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
 
--- Supprimer et recréer la table virement_programme
-DROP TABLE IF EXISTS virement_programme;
-
-CREATE TABLE virement_programme (
+-- Création de la table virement_programme
+CREATE TABLE IF NOT EXISTS virement_programme (
     id BIGINT AUTO_INCREMENT PRIMARY KEY,
     compte_source_id BIGINT,
     numero_compte_destination VARCHAR(50) NOT NULL,
@@ -71,14 +105,12 @@ CREATE TABLE IF NOT EXISTS bank_cards (
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
 
 -- Ajout des colonnes email, phone et address dans la table users
-ALTER TABLE users 
-ADD COLUMN IF NOT EXISTS email VARCHAR(255),
-ADD COLUMN IF NOT EXISTS phone VARCHAR(20),
-ADD COLUMN IF NOT EXISTS address VARCHAR(255);
+CALL bank_add_column('users', 'email', 'VARCHAR(255)');
+CALL bank_add_column('users', 'phone', 'VARCHAR(20)');
+CALL bank_add_column('users', 'address', 'VARCHAR(255)');
 
 -- Ajout de la colonne status dans la table account
-ALTER TABLE account 
-ADD COLUMN IF NOT EXISTS status VARCHAR(20) DEFAULT 'ACTIVE';
+CALL bank_add_column('account', 'status', 'VARCHAR(20) DEFAULT ''ACTIVE''');
 
 -- Ajouter cette table
 CREATE TABLE IF NOT EXISTS cashier_logs (
@@ -107,4 +139,84 @@ CREATE TABLE IF NOT EXISTS agencies (
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     is_active BOOLEAN DEFAULT TRUE,
     FOREIGN KEY (director_id) REFERENCES users(id)
-) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
\ No newline at end of file
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- Séquence des transactions (ids alloués par blocs de 50 pour les insertions par lots)
+CREATE TABLE IF NOT EXISTS transaction_seq (
+    next_val BIGINT
+) ENGINE=InnoDB;
+
+INSERT INTO transaction_seq (next_val)
+SELECT COALESCE(MAX(id), 0) + 51 FROM transaction
+WHERE NOT EXISTS (SELECT 1 FROM transaction_seq);
+
+-- Index des requêtes d'historique, de statistiques et de planification
+CALL bank_add_index('transaction', 'idx_transaction_account_date', 'account_id, date, id');
+CALL bank_add_index('transaction', 'idx_transaction_account_type', 'account_id, type');
+CALL bank_add_index('transaction', 'idx_transaction_type_date', 'type, date');
+CALL bank_add_index('transaction', 'idx_transaction_date', 'date');
+CALL bank_add_index('account', 'idx_account_user', 'user_id');
+CALL bank_add_index('account', 'idx_account_status', 'status');
+CALL bank_add_index('users', 'idx_users_agency_role', 'agency_id, role');
+CALL bank_add_index('cashier_logs', 'idx_cashier_log_cashier_date', 'cashier_id, date');
+CALL bank_add_index('cashier_logs', 'idx_cashier_log_date', 'date');
+CALL bank_add_index('virement_programme', 'idx_virement_due', 'executed, date_execution');
+CALL bank_add_index('virement_programme', 'idx_virement_source_date', 'compte_source_id, date_execution');
+
+-- Identifiant commun aux deux jambes d'un virement (remplace l'appariement par from/to/montant/date)
+CALL bank_add_column('transaction', 'transfer_id', 'VARCHAR(36)');
+CALL bank_add_column('transaction', 'leg', 'VARCHAR(10)');
+CALL bank_add_index('transaction', 'idx_transaction_leg_date', 'leg, date');
+CALL bank_add_index('transaction', 'idx_transaction_transfer', 'transfer_id');
+-- idx_transaction_pair (from_account, to_account, amount, date) n'est pas déclaré ici :
+-- TransferIdBackfillService le crée le temps de renseigner transfer_id, puis le supprime
+
+-- Agrégats journaliers des transactions par agence (tenus à chaque écriture de transaction)
+CREATE TABLE IF NOT EXISTS agency_daily_aggregate (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    agency_id BIGINT NOT NULL,
+    stat_day DATE NOT NULL,
+    type VARCHAR(20) NOT NULL,
+    slot INT NOT NULL,
+    tx_count BIGINT NOT NULL,
+    total_amount DOUBLE NOT NULL,
+    CONSTRAINT uk_agency_daily_aggregate UNIQUE (agency_id, stat_day, type, slot)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- État partagé des échecs de connexion (bank.security.login-attempts.store=jdbc),
+-- créé au démarrage par JdbcLoginAttemptStore s'il n'existe pas
+CREATE TABLE IF NOT EXISTS login_attempt_state (
+    username VARCHAR(255) NOT NULL PRIMARY KEY,
+    attempts INT NOT NULL,
+    cycles INT NOT NULL,
+    blocked_until BIGINT NOT NULL,
+    attempts_expire_at BIGINT NOT NULL,
+    expires_at BIGINT NOT NULL,
+    version BIGINT NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- Bail d'exécution des virements programmés (ScheduledTransferExecutor)
+CALL bank_add_column('virement_programme', 'claimed_by', 'VARCHAR(64) NULL');
+CALL bank_add_column('virement_programme', 'claimed_until', 'DATETIME(6) NULL');
+
+-- Ordres permanents : une seule ligne par ordre, avancée à chaque échéance (StandingOrderSchedule)
+CALL bank_add_column('virement_programme', 'recurrence_rule', 'VARCHAR(64) NULL');
+CALL bank_add_column('virement_programme', 'recurrence_start', 'DATETIME(6) NULL');
+CALL bank_add_column('virement_programme', 'recurrence_end', 'DATETIME(6) NULL');
+CALL bank_add_column('virement_programme', 'occurrence_index', 'INT NOT NULL DEFAULT 0');
+CALL bank_add_column('virement_programme', 'last_execution_date', 'DATETIME(6) NULL');
+CALL bank_add_column('virement_programme', 'last_status', 'VARCHAR(20) NULL');
+
+-- Battement de cœur du réplica (ReplicaLagMonitor), créé au démarrage s'il n'existe pas
+CREATE TABLE IF NOT EXISTS replica_heartbeat (
+    id INT NOT NULL PRIMARY KEY,
+    beat BIGINT NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- Dernier changement d'identifiants : les jetons de session émis avant sont refusés (SessionTokenService)
+CALL bank_add_column('users', 'credentials_changed_at', 'BIGINT NULL');
+
+DROP PROCEDURE bank_add_column;
+DROP PROCEDURE bank_add_index;
+
+SET FOREIGN_KEY_CHECKS = 1;
@@ -0,0 +1,200 @@
+package com.example.bank.demo.config;
+
+import com.example.bank.demo.security.AuthenticatedUser;
+import com.example.bank.demo.security.RequestPrincipal;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Aiguillage lecture/écriture sur deux bases H2 distinctes, « primaire » et « réplica » ;
+ * la réplication du battement de cœur est simulée en écrivant directement sur le réplica.
+ */
+class ReadWriteRoutingDataSourceTest {
+
+    private static final long MAX_LAG_MILLIS = 500;
+
+    private HikariDataSource primary;
+    private HikariDataSource replica;
+    private ReplicaLagMonitor monitor;
+    private RequestPrincipal requestPrincipal;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate readOnly;
+    private TransactionTemplate readWrite;
+
+    @BeforeEach
+    void setUp() {
+        primary = h2("primary", false);
+        replica = h2("replica", true);
+        new JdbcTemplate(primary).execute("CREATE TABLE node (name VARCHAR(10))");
+        new JdbcTemplate(primary).update("INSERT INTO node VALUES ('primary')");
+        try (HikariDataSource setup = h2Url(replica.getJdbcUrl(), false)) {
+            JdbcTemplate replicaSetup = new JdbcTemplate(setup);
+            replicaSetup.execute("CREATE TABLE node (name VARCHAR(10))");
+            replicaSetup.update("INSERT INTO node VALUES ('replica')");
+            replicaSetup.execute("CREATE TABLE replica_heartbeat (id INT NOT NULL PRIMARY KEY, beat BIGINT NOT NULL)");
+            replicaSetup.update("INSERT INTO replica_heartbeat VALUES (1, 0)");
+        }
+
+        monitor = new ReplicaLagMonitor(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(monitor, "writeDataSource", primary);
+        ReflectionTestUtils.setField(monitor, "readDataSource", replica);
+        ReflectionTestUtils.setField(monitor, "enabled", true);
+        ReflectionTestUtils.setField(monitor, "maxLagMillis", MAX_LAG_MILLIS);
+        monitor.createTable();
+
+        requestPrincipal = mock(RequestPrincipal.class);
+        when(requestPrincipal.current()).thenReturn(Optional.empty());
+        ReadYourWrites readYourWrites = new ReadYourWrites(60_000, 1000);
+        ReflectionTestUtils.setField(readYourWrites, "requestPrincipal", requestPrincipal);
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(ReadWriteRoutingDataSource.Route.WRITE, primary);
+        targets.put(ReadWriteRoutingDataSource.Route.READ, replica);
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(monitor, readYourWrites);
+        routing.setTargetDataSources(targets);
+        routing.setDefaultTargetDataSource(primary);
+        routing.afterPropertiesSet();
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(routing);
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readWrite = new TransactionTemplate(transactionManager);
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+        primary.close();
+        replica.close();
+    }
+
+    @Test
+    void readOnlyTransactionsUseReplicaOnlyOnceAFreshBeatWasRead() {
+        assertEquals("primary", readOnlyNode());
+
+        replicate(System.currentTimeMillis());
+        monitor.measure();
+
+        assertTrue(monitor.isReplicaUsable());
+        assertEquals("replica", readOnlyNode());
+        assertEquals("primary", readWrite.execute(status -> node()));
+        assertEquals("primary", node());
+    }
+
+    @Test
+    void laggingReplicaFallsBackToPrimary() {
+        replicate(System.currentTimeMillis() - 10 * MAX_LAG_MILLIS);
+        monitor.measure();
+
+        assertFalse(monitor.isReplicaUsable());
+        assertEquals("primary", readOnlyNode());
+    }
+
+    @Test
+    void replicaStopsBeingUsedWhenNoMeasureRuns() throws InterruptedException {
+        replicate(System.currentTimeMillis());
+        monitor.measure();
+        assertEquals("replica", readOnlyNode());
+
+        // Mesures bloquées : l'ancienne mesure ne suffit plus une fois max-lag-ms écoulé
+        Thread.sleep(MAX_LAG_MILLIS + 100);
+
+        assertFalse(monitor.isReplicaUsable());
+        assertEquals("primary", readOnlyNode());
+    }
+
+    @Test
+    void replicaStopsBeingUsedWhenBeatsStopArriving() throws InterruptedException {
+        replicate(System.currentTimeMillis());
+        monitor.measure();
+        assertEquals("replica", readOnlyNode());
+
+        // Réplica injoignable : plus aucune mesure n'aboutit
+        replica.close();
+        monitor.measure();
+        Thread.sleep(MAX_LAG_MILLIS + 100);
+
+        assertFalse(monitor.isReplicaUsable());
+        assertEquals("primary", readOnlyNode());
+    }
+
+    @Test
+    void requestThatWroteKeepsReadingPrimary() {
+        replicate(System.currentTimeMillis());
+        monitor.measure();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        assertEquals("replica", readOnlyNode());
+
+        readWrite.executeWithoutResult(status -> jdbcTemplate.update("UPDATE node SET name = 'primary'"));
+
+        assertEquals("primary", readOnlyNode());
+    }
+
+    @Test
+    void userWhoWroteIsPinnedToPrimaryAcrossRequests() {
+        replicate(System.currentTimeMillis());
+        monitor.measure();
+        when(requestPrincipal.current()).thenReturn(Optional.of(new AuthenticatedUser(1L, "alice", "CLIENT", null)));
+
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        readWrite.executeWithoutResult(status -> jdbcTemplate.update("UPDATE node SET name = 'primary'"));
+
+        // Requête suivante du même utilisateur
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        assertEquals("primary", readOnlyNode());
+
+        when(requestPrincipal.current()).thenReturn(Optional.of(new AuthenticatedUser(2L, "bob", "CLIENT", null)));
+        assertEquals("replica", readOnlyNode());
+    }
+
+    private String readOnlyNode() {
+        return readOnly.execute(status -> node());
+    }
+
+    private String node() {
+        return jdbcTemplate.queryForObject("SELECT name FROM node", String.class);
+    }
+
+    // Simule la réplication du battement écrit sur le primaire
+    private void replicate(long beat) {
+        try (HikariDataSource writer = h2Url(replica.getJdbcUrl(), false)) {
+            new JdbcTemplate(writer).update("UPDATE replica_heartbeat SET beat = ? WHERE id = 1", beat);
+        }
+    }
+
+    private static HikariDataSource h2(String name, boolean readOnly) {
+        return h2Url("jdbc:h2:mem:" + name + "-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", readOnly);
+    }
+
+    private static HikariDataSource h2Url(String url, boolean readOnly) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(url);
+        dataSource.setReadOnly(readOnly);
+        dataSource.setMaximumPoolSize(2);
+        return dataSource;
+    }
+}
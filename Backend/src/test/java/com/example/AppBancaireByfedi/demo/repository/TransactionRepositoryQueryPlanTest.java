@@ -0,0 +1,158 @@
+package com.example.bank.demo.repository;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Plan d'exécution de chaque requête de TransactionRepository sur un jeu de données H2 :
+ * aucune ne doit parcourir une table entière. Le SQL généré par Hibernate est capturé puis
+ * passé à EXPLAIN ; H2 choisit le plan à la préparation, les paramètres y sont liés à NULL.
+ */
+@DataJpaTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:queryplan;DB_CLOSE_DELAY=-1",
+    "spring.datasource.driver-class-name=org.h2.Driver",
+    "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+    "spring.sql.init.mode=never",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "spring.jpa.show-sql=false",
+    "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.example.bank.demo.repository.TransactionRepositoryQueryPlanTest$Recorder"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class TransactionRepositoryQueryPlanTest {
+
+    private static final int AGENCIES = 20;
+    private static final int USERS = 2_000;
+    private static final int ACCOUNTS = 4_000;
+    private static final int TRANSACTIONS = 100_000;
+    private static final long DAY = 24L * 3600 * 1000;
+    private static final long START = 1_700_000_000_000L;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /** Mémorise le SQL émis par Hibernate (instancié par Hibernate, d'où l'état statique). */
+    public static class Recorder implements StatementInspector {
+        static final List<String> statements = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            statements.add(sql);
+            return sql;
+        }
+    }
+
+    @BeforeEach
+    void seed() {
+        jdbcTemplate.update("INSERT INTO agencies (id, code, name, is_active) "
+            + "SELECT X, 'AG' || X, 'Agence ' || X, TRUE FROM SYSTEM_RANGE(1, " + AGENCIES + ")");
+        jdbcTemplate.update("INSERT INTO users (id, username, password, role, agency_id) "
+            + "SELECT X, 'user' || X, 'x', 'CLIENT', MOD(X, " + AGENCIES + ") + 1 "
+            + "FROM SYSTEM_RANGE(1, " + USERS + ")");
+        jdbcTemplate.update("INSERT INTO account (id, account_number, balance, status, user_id) "
+            + "SELECT X, 'ACC' || X, 100, 'ACTIVE', MOD(X, " + USERS + ") + 1 "
+            + "FROM SYSTEM_RANGE(1, " + ACCOUNTS + ")");
+        jdbcTemplate.update("INSERT INTO transaction (id, amount, type, status, date, account_id, leg) "
+            + "SELECT X, 10, CASEWHEN(MOD(X, 4) = 0, 'CREDIT', CASEWHEN(MOD(X, 4) = 1, 'DEBIT', "
+            + "CASEWHEN(MOD(X, 4) = 2, 'DEPOSIT', 'WITHDRAW'))), 'SUCCESS', "
+            + "DATEADD('MILLISECOND', X * 5000, TIMESTAMP '2023-11-14 22:13:20'), "
+            + "MOD(X, " + ACCOUNTS + ") + 1, CASEWHEN(MOD(X, 4) = 0, 'MIRROR', 'PRIMARY') "
+            + "FROM SYSTEM_RANGE(1, " + TRANSACTIONS + ")");
+        jdbcTemplate.execute("ANALYZE");
+        Recorder.statements.clear();
+    }
+
+    @Test
+    void noTransactionRepositoryQueryScansAWholeTable() throws SQLException {
+        Date from = new Date(START + DAY);
+        Date to = new Date(START + DAY + 3600 * 1000);
+
+        Map<String, Runnable> queries = new LinkedHashMap<>();
+        queries.put("findByAccountIdOrderByDateDesc", () -> transactionRepository.findByAccountIdOrderByDateDesc(42L));
+        queries.put("findByAccount_UserIdOrderByDateDesc", () -> transactionRepository.findByAccount_UserIdOrderByDateDesc(42L));
+        queries.put("findByAccount_User_IdAndType", () -> transactionRepository.findByAccount_User_IdAndType(42L, "DEBIT"));
+        queries.put("findByAccountIdOrderByDateDescIdDesc",
+            () -> transactionRepository.findByAccountIdOrderByDateDescIdDesc(42L, PageRequest.of(0, 20)));
+        queries.put("findByAccountIdBefore",
+            () -> transactionRepository.findByAccountIdBefore(42L, to, Long.MAX_VALUE, PageRequest.of(0, 20)));
+        queries.put("findAllOrderByDateDesc", () -> transactionRepository.findAllOrderByDateDesc());
+        queries.put("countAllOperations", () -> transactionRepository.countAllOperations());
+        queries.put("findViewsByAccountId", () -> transactionRepository.findViewsByAccountId(42L));
+        queries.put("findViewsByUserId", () -> transactionRepository.findViewsByUserId(42L));
+        queries.put("findViewsByAgencyId", () -> transactionRepository.findViewsByAgencyId(7L));
+        queries.put("findByAgencyIdAndDateBetween", () -> transactionRepository.findByAgencyIdAndDateBetween(7L, from, to));
+        queries.put("findByDateAfterOrderByDateDesc",
+            () -> transactionRepository.findByDateAfterOrderByDateDesc(new Date(START + TRANSACTIONS * 5000L - 3600 * 1000)));
+        queries.put("sumByTypeAfterDate",
+            () -> transactionRepository.sumByTypeAfterDate(new Date(START + TRANSACTIONS * 5000L - 3600 * 1000)));
+        queries.put("sumByTypeForAgencyAndDateRange", () -> transactionRepository.sumByTypeForAgencyAndDateRange(7L, from, to));
+        queries.put("sumByAgencyAndTypeForDateRange", () -> transactionRepository.sumByAgencyAndTypeForDateRange(from, to));
+
+        // Toute nouvelle requête du repository doit figurer ici
+        Set<String> declared = Arrays.stream(TransactionRepository.class.getDeclaredMethods())
+            .map(Method::getName)
+            .filter(name -> !name.startsWith("delete"))
+            .collect(Collectors.toCollection(TreeSet::new));
+        assertEquals(declared, new TreeSet<>(queries.keySet()));
+
+        List<String> scans = new ArrayList<>();
+        for (Map.Entry<String, Runnable> query : queries.entrySet()) {
+            Recorder.statements.clear();
+            query.getValue().run();
+            assertFalse(Recorder.statements.isEmpty(), query.getKey());
+            for (String sql : new LinkedHashSet<>(Recorder.statements)) {
+                String plan = explain(sql);
+                if (plan.contains(".tableScan")) {
+                    scans.add(query.getKey() + " : " + plan);
+                }
+            }
+        }
+        assertTrue(scans.isEmpty(), String.join("\n", scans));
+    }
+
+    private String explain(String sql) throws SQLException {
+        try (Connection connection = jdbcTemplate.getDataSource().getConnection();
+             PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql)) {
+            for (int i = 1; i <= statement.getParameterMetaData().getParameterCount(); i++) {
+                statement.setObject(i, null);
+            }
+            try (ResultSet plan = statement.executeQuery()) {
+                StringBuilder text = new StringBuilder();
+                while (plan.next()) {
+                    text.append(plan.getString(1).replaceAll("\\s+", " "));
+                }
+                return text.toString();
+            }
+        }
+    }
+}
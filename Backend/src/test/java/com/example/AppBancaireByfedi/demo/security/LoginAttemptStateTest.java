@@ -0,0 +1,57 @@
+package com.example.bank.demo.security;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoginAttemptStateTest {
+
+    private static final int MAX_CYCLES = 3;
+
+    @Test
+    void noStateStaysNull() {
+        assertNull(LoginAttemptState.current(null, 1000, MAX_CYCLES));
+    }
+
+    @Test
+    void pendingAttemptsAreKeptUntilTheyExpire() {
+        LoginAttemptState state = new LoginAttemptState(2, 0, 0, 5000);
+
+        assertSame(state, LoginAttemptState.current(state, 4999, MAX_CYCLES));
+        assertNull(LoginAttemptState.current(state, 5000, MAX_CYCLES));
+    }
+
+    @Test
+    void expiredAttemptsKeepTheCycleCount() {
+        LoginAttemptState state = new LoginAttemptState(2, 1, 0, 5000);
+
+        assertEquals(new LoginAttemptState(0, 1, 0, 0), LoginAttemptState.current(state, 6000, MAX_CYCLES));
+    }
+
+    @Test
+    void activeBlockIsKept() {
+        LoginAttemptState state = new LoginAttemptState(5, 1, 10_000, 0);
+
+        assertSame(state, LoginAttemptState.current(state, 9999, MAX_CYCLES));
+        assertTrue(state.isBlocked(9999));
+        assertFalse(state.isBlocked(10_000));
+    }
+
+    @Test
+    void endOfShortBlockResetsAttemptsOnly() {
+        LoginAttemptState state = new LoginAttemptState(5, 1, 10_000, 0);
+
+        assertEquals(new LoginAttemptState(0, 1, 0, 0), LoginAttemptState.current(state, 10_000, MAX_CYCLES));
+    }
+
+    @Test
+    void endOfLongBlockForgetsEverything() {
+        LoginAttemptState state = new LoginAttemptState(5, MAX_CYCLES, 10_000, 0);
+
+        assertNull(LoginAttemptState.current(state, 10_000, MAX_CYCLES));
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.bank.demo.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void burstIsServedThenCallersWaitForTheNextToken() {
+        TokenBucket bucket = new TokenBucket(1.0, 3);
+        long now = System.nanoTime();
+
+        assertEquals(0, bucket.tryAcquire(now));
+        assertEquals(0, bucket.tryAcquire(now));
+        assertEquals(0, bucket.tryAcquire(now));
+        long wait = bucket.tryAcquire(now);
+
+        assertTrue(wait > 0 && wait <= SECOND, "attente : " + wait);
+        assertTrue(bucket.tryAcquire(now + wait - 1) > 0);
+        assertEquals(0, bucket.tryAcquire(now + wait));
+    }
+
+    @Test
+    void idleTimeRefillsNoMoreThanTheBurst() {
+        TokenBucket bucket = new TokenBucket(10.0, 2);
+        long later = System.nanoTime() + 100 * SECOND;
+
+        assertEquals(0, bucket.tryAcquire(later));
+        assertEquals(0, bucket.tryAcquire(later));
+        assertTrue(bucket.tryAcquire(later) > 0);
+    }
+
+    @Test
+    void refundGivesBackTheToken() {
+        TokenBucket bucket = new TokenBucket(1.0, 2);
+        long now = System.nanoTime();
+        assertEquals(0, bucket.tryAcquire(now));
+        assertEquals(0, bucket.tryAcquire(now));
+        assertTrue(bucket.tryAcquire(now) > 0);
+
+        bucket.refund();
+
+        assertEquals(0, bucket.tryAcquire(now));
+        assertTrue(bucket.tryAcquire(now) > 0);
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.bank.demo.service;
+
+import com.example.bank.demo.model.CashierLogView;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AuditSegmentStoreTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 3, 1, 9, 0);
+
+    @TempDir
+    Path dir;
+
+    private final List<AuditSegmentStore> stores = new ArrayList<>();
+
+    @AfterEach
+    void closeStores() throws IOException {
+        for (AuditSegmentStore store : stores) {
+            store.close();
+        }
+    }
+
+    @Test
+    void rangeReturnsNewestFirstWithinBoundsAndFilter() throws IOException {
+        AuditSegmentStore store = open(1 << 20);
+        store.append(List.of(entry(1, 10, 0), entry(2, 20, 1), entry(3, 10, 2), entry(4, 10, 3)));
+
+        List<CashierLogView> logs = store.range(T0.plusMinutes(1), T0.plusMinutes(3), id -> id == 10, 10);
+
+        assertEquals(List.of(3L), ids(logs));
+        assertEquals(List.of(4L, 3L, 2L, 1L), ids(store.range(T0, T0.plusHours(1), id -> true, 10)));
+        assertEquals(List.of(4L, 3L), ids(store.range(T0, T0.plusHours(1), id -> true, 2)));
+    }
+
+    @Test
+    void rangeSpansSegments() throws IOException {
+        // Une entrée par segment
+        AuditSegmentStore store = open(100);
+        store.append(List.of(entry(1, 10, 0), entry(2, 10, 1), entry(3, 10, 2)));
+
+        assertEquals(3, segmentFiles().size());
+        assertEquals(List.of(3L, 2L, 1L), ids(store.tail(10)));
+    }
+
+    @Test
+    void truncatedTailIsDroppedOnOpen() throws IOException {
+        AuditSegmentStore store = open(1 << 20);
+        store.append(List.of(entry(1, 10, 0), entry(2, 10, 1)));
+        store.close();
+
+        Path segment = segmentFiles().get(0);
+        long validSize = Files.size(segment);
+        // Entrée annoncée sur 500 octets mais interrompue après 4
+        Files.write(segment, new byte[] {0, 0, 1, (byte) 0xF4, 1, 2, 3, 4}, StandardOpenOption.APPEND);
+
+        AuditSegmentStore reopened = open(1 << 20);
+        assertEquals(validSize, Files.size(segment));
+        assertEquals(List.of(2L, 1L), ids(reopened.tail(10)));
+
+        reopened.append(List.of(entry(3, 10, 2)));
+        assertEquals(List.of(3L, 2L, 1L), ids(reopened.tail(10)));
+    }
+
+    @Test
+    void deletedSegmentsAreSkipped() throws IOException {
+        AuditSegmentStore store = open(100);
+        store.append(List.of(entry(1, 10, 0), entry(2, 10, 60), entry(3, 10, 120)));
+        // Projeter les segments fermés avant la suppression
+        assertEquals(3, store.tail(10).size());
+
+        assertEquals(1, store.deleteSegmentsBefore(T0.plusMinutes(30)));
+
+        assertEquals(2, segmentFiles().size());
+        assertEquals(List.of(3L, 2L), ids(store.tail(10)));
+    }
+
+    @Test
+    void segmentBytesAboveIntRangeIsRejected() {
+        AuditSegmentStore store = configure((long) Integer.MAX_VALUE + 1);
+        assertThrows(IllegalStateException.class, store::open);
+    }
+
+    private AuditSegmentStore open(long segmentBytes) throws IOException {
+        AuditSegmentStore store = configure(segmentBytes);
+        store.open();
+        stores.add(store);
+        return store;
+    }
+
+    private AuditSegmentStore configure(long segmentBytes) {
+        AuditSegmentStore store = new AuditSegmentStore();
+        ReflectionTestUtils.setField(store, "enabled", true);
+        ReflectionTestUtils.setField(store, "directory", dir.toString());
+        ReflectionTestUtils.setField(store, "segmentBytes", segmentBytes);
+        return store;
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            List<Path> segments = files.filter(path -> path.toString().endsWith(".seg")).sorted().toList();
+            assertTrue(segments.size() > 0);
+            return segments;
+        }
+    }
+
+    private static AuditSegmentStore.Entry entry(long id, long cashierId, int minutes) {
+        return new AuditSegmentStore.Entry(cashierId, new CashierLogView(id, "DEPOSIT", "Dépôt", T0.plusMinutes(minutes),
+            100.0, "ACC-1", "Client", "SUCCESS", null));
+    }
+
+    private static List<Long> ids(List<CashierLogView> logs) {
+        return logs.stream().map(CashierLogView::id).toList();
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.bank.demo.service;
+
+import com.example.bank.demo.exception.ValidationException;
+import com.example.bank.demo.model.Account;
+import com.example.bank.demo.model.BatchTransferRequest;
+import com.example.bank.demo.model.Transaction;
+import com.example.bank.demo.model.User;
+import com.example.bank.demo.repository.AccountRepository;
+import com.example.bank.demo.repository.TransactionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Lot de virements en mode bank.ledger.in-memory=true : validation tout ou rien et
+ * conservation des centimes entre le débit du compte source et les crédits.
+ */
+class BatchTransferServiceTest {
+
+    private BatchTransferService service;
+    private InMemoryBalanceLedger ledger;
+    private TransactionRepository transactionRepository;
+    private Account source;
+    private Account alice;
+    private Account bob;
+    private Account closed;
+
+    @BeforeEach
+    void setUp() {
+        ledger = new InMemoryBalanceLedger();
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        BalanceLedgerService balanceLedgerService = new BalanceLedgerService(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(balanceLedgerService, "inMemory", true);
+        ReflectionTestUtils.setField(balanceLedgerService, "inMemoryLedger", ledger);
+        ReflectionTestUtils.setField(balanceLedgerService, "transactionTemplate", new TransactionTemplate(transactionManager));
+
+        source = account(1L, "SRC", 100.0, "ACTIVE");
+        alice = account(2L, "ALICE", 0.0, "ACTIVE");
+        bob = account(3L, "BOB", 0.0, "ACTIVE");
+        closed = account(4L, "CLOSED", 0.0, "CLOSED");
+
+        AccountRepository accountRepository = mock(AccountRepository.class);
+        when(accountRepository.findByAccountNumberIn(anyCollection())).thenReturn(List.of(alice, bob, closed));
+        UserService userService = mock(UserService.class);
+        when(userService.verifyPassword(anyLong(), anyString())).thenReturn(true);
+        transactionRepository = mock(TransactionRepository.class);
+
+        service = new BatchTransferService();
+        ReflectionTestUtils.setField(service, "accountRepository", accountRepository);
+        ReflectionTestUtils.setField(service, "transactionRepository", transactionRepository);
+        ReflectionTestUtils.setField(service, "userService", userService);
+        ReflectionTestUtils.setField(service, "nameMatchingService", mock(NameMatchingService.class));
+        ReflectionTestUtils.setField(service, "balanceLedgerService", balanceLedgerService);
+        ReflectionTestUtils.setField(service, "agencyAggregateService", mock(AgencyAggregateService.class));
+        ReflectionTestUtils.setField(service, "maxBatchSize", 100);
+    }
+
+    @Test
+    void anyInvalidLineRejectsTheWholeBatch() {
+        BatchTransferRequest request = request(
+            item("ALICE", 10.0),
+            item("UNKNOWN", 5.0),
+            item("BOB", -1.0),
+            item("CLOSED", 5.0),
+            item("SRC", 5.0),
+            item("BOB", 0.004));
+
+        ValidationException e = assertThrows(ValidationException.class, () -> service.executeBatch(source, request));
+
+        assertEquals(List.of("transfers[1]", "transfers[2]", "transfers[3]", "transfers[4]", "transfers[5]"),
+            new ArrayList<>(e.getErrors().keySet()));
+        assertEquals(10_000, ledger.balanceOf(source));
+        assertEquals(0, ledger.balanceOf(alice));
+        assertEquals(0, ledger.balanceOf(bob));
+        verify(transactionRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void insufficientBalanceRejectsTheWholeBatch() {
+        BatchTransferRequest request = request(item("ALICE", 60.0), item("BOB", 40.01));
+
+        assertThrows(RuntimeException.class, () -> service.executeBatch(source, request));
+
+        assertEquals(10_000, ledger.balanceOf(source));
+        assertEquals(0, ledger.balanceOf(alice));
+        assertEquals(0, ledger.balanceOf(bob));
+        verify(transactionRepository, never()).saveAll(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void debitIsTheSumOfTheRoundedCredits() {
+        // 3 x 0,005 : arrondir le total (1,5 centime) au lieu de chaque ligne créerait un centime
+        BatchTransferRequest request = request(item("ALICE", 0.005), item("BOB", 0.005), item("ALICE", 0.005));
+
+        Map<String, Object> result = service.executeBatch(source, request);
+
+        long credited = ledger.balanceOf(alice) + ledger.balanceOf(bob);
+        assertEquals(3, credited);
+        assertEquals(10_000 - credited, ledger.balanceOf(source));
+        assertEquals(0.03, (Double) result.get("totalAmount"), 1e-9);
+        assertEquals(99.97, (Double) result.get("newBalance"), 1e-9);
+
+        ArgumentCaptor<List<Transaction>> saved = ArgumentCaptor.forClass(List.class);
+        verify(transactionRepository).saveAll(saved.capture());
+        long journaledDebits = saved.getValue().stream()
+            .filter(transaction -> "DEBIT".equals(transaction.getType()))
+            .mapToLong(transaction -> InMemoryBalanceLedger.toMinorUnits(transaction.getAmount()))
+            .sum();
+        assertEquals(credited, journaledDebits);
+    }
+
+    private static BatchTransferRequest request(BatchTransferRequest.Item... items) {
+        BatchTransferRequest request = new BatchTransferRequest();
+        request.setPassword("secret");
+        request.setTransfers(List.of(items));
+        return request;
+    }
+
+    private static BatchTransferRequest.Item item(String toAccountNumber, Double amount) {
+        BatchTransferRequest.Item item = new BatchTransferRequest.Item();
+        item.setToAccountNumber(toAccountNumber);
+        item.setAmount(amount);
+        return item;
+    }
+
+    private static Account account(Long id, String accountNumber, double balance, String status) {
+        User user = new User();
+        user.setId(id);
+        Account account = new Account();
+        account.setId(id);
+        account.setAccountNumber(accountNumber);
+        account.setBalance(balance);
+        account.setStatus(status);
+        account.setUser(user);
+        return account;
+    }
+}
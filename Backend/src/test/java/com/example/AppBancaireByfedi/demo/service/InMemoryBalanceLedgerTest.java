@@ -0,0 +1,213 @@
+package com.example.bank.demo.service;
+
+import com.example.bank.demo.model.Account;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Mode bank.ledger.in-memory=true : un mouvement dont le journal échoue doit être annulé en mémoire.
+ */
+class InMemoryBalanceLedgerTest {
+
+    private InMemoryBalanceLedger ledger;
+    private BalanceLedgerService service;
+    private Account alice;
+    private Account bob;
+    private Account carol;
+
+    @BeforeEach
+    void setUp() {
+        ledger = new InMemoryBalanceLedger();
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+
+        service = new BalanceLedgerService(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "inMemory", true);
+        ReflectionTestUtils.setField(service, "inMemoryLedger", ledger);
+        ReflectionTestUtils.setField(service, "transactionTemplate", new TransactionTemplate(transactionManager));
+
+        alice = account(1L, 100.0);
+        bob = account(2L, 50.0);
+        carol = account(3L, 0.0);
+    }
+
+    @Test
+    void movementsAreAppliedInMinorUnits() {
+        assertEquals(100.10, service.credit(alice, 0.10), 1e-9);
+        assertEquals(99.80, service.debit(alice, 0.30), 1e-9);
+        service.transfer(alice, bob, 9.80, () -> { });
+
+        assertEquals(90.0, service.balanceOf(alice), 1e-9);
+        assertEquals(59.80, service.balanceOf(bob), 1e-9);
+    }
+
+    @Test
+    void failedJournalCompensatesCreditAndDebit() {
+        assertThrows(IllegalStateException.class, () -> service.credit(alice, 25.0, failingJournal()));
+        assertThrows(IllegalStateException.class, () -> service.debit(alice, 25.0, failingJournal()));
+
+        assertEquals(100.0, service.balanceOf(alice), 1e-9);
+    }
+
+    @Test
+    void failedJournalCompensatesTransfer() {
+        assertThrows(IllegalStateException.class, () -> service.transfer(alice, bob, 40.0, failingJournal()));
+
+        assertEquals(100.0, service.balanceOf(alice), 1e-9);
+        assertEquals(50.0, service.balanceOf(bob), 1e-9);
+    }
+
+    @Test
+    void failedJournalCompensatesBatch() {
+        Map<Account, Double> credits = new LinkedHashMap<>();
+        credits.put(bob, 10.0);
+        credits.put(carol, 20.0);
+
+        assertThrows(IllegalStateException.class, () -> service.transferBatch(alice, credits, failingJournal()));
+
+        assertEquals(100.0, service.balanceOf(alice), 1e-9);
+        assertEquals(50.0, service.balanceOf(bob), 1e-9);
+        assertEquals(0.0, service.balanceOf(carol), 1e-9);
+    }
+
+    @Test
+    void outerRollbackCompensatesTheMovement() {
+        inOuterTransaction(TransactionSynchronization.STATUS_ROLLED_BACK, () -> {
+            service.transfer(alice, bob, 40.0, () -> { });
+            assertEquals(60.0, service.balanceOf(alice), 1e-9);
+        });
+
+        assertEquals(100.0, service.balanceOf(alice), 1e-9);
+        assertEquals(50.0, service.balanceOf(bob), 1e-9);
+    }
+
+    @Test
+    void outerCommitKeepsTheMovement() {
+        inOuterTransaction(TransactionSynchronization.STATUS_COMMITTED,
+            () -> service.transfer(alice, bob, 40.0, () -> { }));
+
+        assertEquals(60.0, service.balanceOf(alice), 1e-9);
+        assertEquals(90.0, service.balanceOf(bob), 1e-9);
+    }
+
+    @Test
+    void failedJournalInsideOuterTransactionIsCompensatedOnce() {
+        inOuterTransaction(TransactionSynchronization.STATUS_ROLLED_BACK,
+            () -> assertThrows(IllegalStateException.class, () -> service.credit(alice, 25.0, failingJournal())));
+
+        assertEquals(100.0, service.balanceOf(alice), 1e-9);
+    }
+
+    @Test
+    void evictionWaitsForTheDeletionToCommit() {
+        service.credit(alice, 10.0);
+
+        inOuterTransaction(TransactionSynchronization.STATUS_ROLLED_BACK, () -> service.evict(alice.getId()));
+        assertEquals(110.0, service.balanceOf(alice), 1e-9);
+
+        inOuterTransaction(TransactionSynchronization.STATUS_COMMITTED, () -> service.evict(alice.getId()));
+        assertEquals(100.0, service.balanceOf(alice), 1e-9);
+    }
+
+    @Test
+    void closeZeroesTheBalanceAndRestoresItWhenTheJournalFails() {
+        assertThrows(IllegalStateException.class, () -> service.close(bob, balance -> {
+            throw new IllegalStateException("journal indisponible");
+        }));
+        assertEquals(50.0, service.balanceOf(bob), 1e-9);
+
+        double[] journaled = new double[1];
+        assertEquals(50.0, service.close(bob, balance -> journaled[0] = balance), 1e-9);
+        assertEquals(50.0, journaled[0], 1e-9);
+        assertEquals(0.0, service.balanceOf(bob), 1e-9);
+    }
+
+    @Test
+    void insufficientFundsAndNonPositiveAmountsAreRejectedWithoutJournal() {
+        Runnable journal = () -> {
+            throw new AssertionError("journal écrit pour un mouvement refusé");
+        };
+
+        assertThrows(RuntimeException.class, () -> service.debit(bob, 50.01, journal));
+        assertThrows(RuntimeException.class, () -> service.credit(bob, 0.0, journal));
+        assertThrows(RuntimeException.class, () -> service.debit(bob, -5.0, journal));
+        assertThrows(RuntimeException.class, () -> service.transfer(alice, bob, Double.NaN, journal));
+
+        assertEquals(50.0, service.balanceOf(bob), 1e-9);
+        assertEquals(100.0, service.balanceOf(alice), 1e-9);
+    }
+
+    @Test
+    void concurrentTransfersConserveTheTotal() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8000; i++) {
+            boolean forward = i % 2 == 0;
+            executor.execute(() -> {
+                try {
+                    if (forward) {
+                        service.transfer(alice, bob, 0.01, () -> { });
+                    } else {
+                        service.transfer(bob, alice, 0.01, () -> { });
+                    }
+                } catch (RuntimeException e) {
+                    // Solde insuffisant : aucun mouvement
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(15_000, ledger.balanceOf(alice) + ledger.balanceOf(bob));
+    }
+
+    // Simule une transaction englobante (ScheduledTransferExecutor) terminée avec le statut donné
+    private static void inOuterTransaction(int completionStatus, Runnable work) {
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            work.run();
+            if (completionStatus == TransactionSynchronization.STATUS_COMMITTED) {
+                TransactionSynchronizationUtils.invokeAfterCommit(TransactionSynchronizationManager.getSynchronizations());
+            }
+            TransactionSynchronizationUtils.invokeAfterCompletion(
+                TransactionSynchronizationManager.getSynchronizations(), completionStatus);
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static Runnable failingJournal() {
+        return () -> {
+            throw new IllegalStateException("journal indisponible");
+        };
+    }
+
+    private static Account account(Long id, double balance) {
+        Account account = new Account();
+        account.setId(id);
+        account.setBalance(balance);
+        return account;
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.bank.demo.service;
+
+import com.example.bank.demo.model.VirementProgramme;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StandingOrderScheduleTest {
+
+    @Test
+    void monthlyKeepsTheDayOfMonthWhenPossible() {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 31, 9, 0);
+        VirementProgramme order = order("MONTHLY", start, null);
+
+        assertTrue(StandingOrderSchedule.advance(order, start));
+        assertEquals(LocalDateTime.of(2024, 2, 29, 9, 0), order.getDateExecution());
+        assertTrue(StandingOrderSchedule.advance(order, order.getDateExecution()));
+        assertEquals(LocalDateTime.of(2024, 3, 31, 9, 0), order.getDateExecution());
+        assertTrue(StandingOrderSchedule.advance(order, order.getDateExecution()));
+        assertEquals(LocalDateTime.of(2024, 4, 30, 9, 0), order.getDateExecution());
+        assertEquals(3, order.getOccurrenceIndex());
+    }
+
+    @Test
+    void missedOccurrencesAreSkipped() {
+        LocalDateTime start = LocalDateTime.of(2024, 3, 1, 9, 0);
+        VirementProgramme order = order("DAILY", start, null);
+
+        assertTrue(StandingOrderSchedule.advance(order, LocalDateTime.of(2024, 3, 5, 12, 0)));
+
+        assertEquals(LocalDateTime.of(2024, 3, 6, 9, 0), order.getDateExecution());
+        assertEquals(5, order.getOccurrenceIndex());
+    }
+
+    @Test
+    void orderEndsAfterRecurrenceEnd() {
+        LocalDateTime start = LocalDateTime.of(2024, 3, 1, 9, 0);
+        VirementProgramme order = order("WEEKLY", start, LocalDateTime.of(2024, 3, 10, 0, 0));
+
+        assertTrue(StandingOrderSchedule.advance(order, start));
+        assertEquals(LocalDateTime.of(2024, 3, 8, 9, 0), order.getDateExecution());
+        assertFalse(StandingOrderSchedule.advance(order, order.getDateExecution()));
+        assertEquals(LocalDateTime.of(2024, 3, 8, 9, 0), order.getDateExecution());
+    }
+
+    @Test
+    void cronRuleAdvancesToNextMatch() {
+        // 9 h chaque lundi et jeudi
+        String rule = StandingOrderSchedule.normalize(" 0 0 9 * * MON,THU ");
+        LocalDateTime first = StandingOrderSchedule.first(rule, LocalDateTime.of(2024, 3, 4, 9, 0));
+        assertEquals(LocalDateTime.of(2024, 3, 4, 9, 0), first);
+
+        VirementProgramme order = order(rule, first, null);
+        assertTrue(StandingOrderSchedule.advance(order, first));
+        assertEquals(LocalDateTime.of(2024, 3, 7, 9, 0), order.getDateExecution());
+        assertTrue(StandingOrderSchedule.advance(order, order.getDateExecution()));
+        assertEquals(LocalDateTime.of(2024, 3, 11, 9, 0), order.getDateExecution());
+    }
+
+    @Test
+    void periodicRulesAreNormalized() {
+        assertEquals("MONTHLY", StandingOrderSchedule.normalize(" monthly "));
+    }
+
+    @Test
+    void invalidOrTooFrequentRulesAreRejected() {
+        assertThrows(RuntimeException.class, () -> StandingOrderSchedule.normalize("HOURLY"));
+        assertThrows(RuntimeException.class, () -> StandingOrderSchedule.normalize("* * * * * *"));
+        assertThrows(RuntimeException.class, () -> StandingOrderSchedule.normalize("0 0 9,17 * * *"));
+        assertEquals("0 0 9 * * MON-FRI", StandingOrderSchedule.normalize("0 0 9 * * MON-FRI"));
+    }
+
+    private static VirementProgramme order(String rule, LocalDateTime start, LocalDateTime end) {
+        VirementProgramme order = new VirementProgramme();
+        order.setRecurrenceRule(rule);
+        order.setRecurrenceStart(start);
+        order.setRecurrenceEnd(end);
+        order.setDateExecution(start);
+        return order;
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.bank.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimingWheelTest {
+
+    private static final long TICK = 10;
+    private static final int SIZE = 8;
+
+    @Test
+    void itemsComeOutInDueOrderAtTheFirstTickAfterTheirDueTime() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, SIZE, 0);
+        assertTrue(wheel.add("c", 35));
+        assertTrue(wheel.add("a", 15));
+        assertTrue(wheel.add("b", 25));
+
+        assertEquals(List.of(), wheel.advance(19));
+        assertEquals(List.of("a"), wheel.advance(20));
+        assertEquals(List.of("b", "c"), wheel.advance(40));
+        assertEquals(List.of(), wheel.advance(1000));
+    }
+
+    @Test
+    void itemsAlreadyDueAreRefused() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, SIZE, 100);
+
+        assertFalse(wheel.add("past", 50));
+        assertFalse(wheel.add("now", 100));
+        assertTrue(wheel.add("next", 101));
+        assertEquals(List.of("next"), wheel.advance(110));
+    }
+
+    @Test
+    void distantItemsCascadeThroughOverflowWheels() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, SIZE, 0);
+        // Roue de base : 80 ms, première roue de débordement : 640 ms, la suivante au-delà
+        assertTrue(wheel.add("level1", 500));
+        assertTrue(wheel.add("level2", 5000));
+        assertTrue(wheel.add("base", 70));
+
+        assertEquals(List.of("base"), wheel.advance(70));
+        assertEquals(List.of(), wheel.advance(499));
+        assertEquals(List.of("level1"), wheel.advance(500));
+        assertEquals(List.of(), wheel.advance(4999));
+        assertEquals(List.of("level2"), wheel.advance(5000));
+    }
+
+    @Test
+    void randomScheduleTickByTickIsNeverEarlyNorLate() {
+        Random random = new Random(42);
+        long start = 1_000_003;
+        TimingWheel<Integer> wheel = new TimingWheel<>(TICK, SIZE, start);
+        Map<Integer, Long> dueTimes = new HashMap<>();
+        for (int i = 0; i < 2000; i++) {
+            long due = start + 1 + random.nextInt(20_000);
+            dueTimes.put(i, due);
+            assertTrue(wheel.add(i, due));
+        }
+
+        // Chaque élément doit sortir exactement au tick qui suit son échéance, donc dans l'ordre des ticks
+        List<Integer> fired = new ArrayList<>();
+        for (long now = start - start % TICK + TICK; fired.size() < dueTimes.size(); now += TICK) {
+            for (Integer item : wheel.advance(now)) {
+                long due = dueTimes.get(item);
+                assertTrue(due <= now, "rendu avant son échéance : " + item);
+                assertTrue(due > now - TICK, "rendu en retard : " + item);
+                fired.add(item);
+            }
+        }
+        assertEquals(dueTimes.size(), fired.size());
+    }
+}